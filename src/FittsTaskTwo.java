@@ -1,7 +1,13 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.geom.*;
+import java.awt.image.BufferStrategy;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import javax.swing.*;
 
 import java.io.*;
@@ -398,8 +404,8 @@ import java.io.*;
 public class FittsTaskTwo
 {        
 	public static void main(String[] args) throws IOException
-	{       
-                System.out.println("main da FittsTaskTwo iniciado");
+	{
+		FittsTaskTwoLog.installCrashHandler("FittsTaskTwo");
 		if (args.length > 1 || (args.length == 1 && args[0].equals("?")))
 			usage();
 
@@ -420,13 +426,42 @@ public class FittsTaskTwo
 		FittsTaskTwoSetup s = new FittsTaskTwoSetup(null, c);
 		s.showFittsTaskTwoSetup(null);
 
+		int level = FittsTaskTwoLog.parseLevel(c.getLogLevel());
+		if (level < 0)
+		{
+			showError("Unknown log level: " + c.getLogLevel());
+			System.exit(1);
+		}
+		FittsTaskTwoLog.setLevel(level);
+
+		// warm up the JIT compiler, so the first sequence runs compiled code (maybe)
+		if (c.getWarmUp())
+		{
+			FittsTaskTwoWarmup w = new FittsTaskTwoWarmup(c);
+			w.run();
+			if (w.isStable())
+				FittsTaskTwoLog.log(FittsTaskTwoLog.INFO, FittsTaskTwoLog.WARM_UP, w.getBlocks(), w.getTime(), 0);
+			else
+				FittsTaskTwoLog.log(FittsTaskTwoLog.WARN, FittsTaskTwoLog.WARM_UP_UNSTABLE, w.getBlocks(), w.getTime(),
+						0);
+		}
+
+		// measure the mouse events on their way through the event queue
+		FittsTaskTwoEventQueue queue = new FittsTaskTwoEventQueue();
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(queue);
+
 		// Setup is done. do it!
-		FittsTaskTwoFrame frame = new FittsTaskTwoFrame(c);
+		FittsTaskTwoFrame frame = new FittsTaskTwoFrame(c, queue);
 		frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		frame.setTitle("FittsTaskTwo");
-		frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
-		frame.pack();
-		frame.setVisible(true);
+		if (c.getActiveRendering())
+			frame.showFullScreen();
+		else
+		{
+			frame.setExtendedState(JFrame.MAXIMIZED_BOTH);
+			frame.pack();
+			frame.setVisible(true);
+		}
 	}                
 
 	private static void usage()
@@ -437,7 +472,7 @@ public class FittsTaskTwo
 		System.exit(0);
 	}
 
-	private static FittsTaskTwoConfiguration readConfigurationData(String filename)
+	static FittsTaskTwoConfiguration readConfigurationData(String filename)
 	{
 		String fileName = filename != null ? filename : "FittsTaskTwo.cfg";
 
@@ -480,23 +515,76 @@ public class FittsTaskTwo
 			System.exit(0);
 		}
 
-		String participantCode = getNextLineInConfigurationFile(inFile);
-		String conditionCode = getNextLineInConfigurationFile(inFile);
-		String blockCode = getNextLineInConfigurationFile(inFile);
-		int numberOfTargets = Integer.parseInt(getNextLineInConfigurationFile(inFile));
-		String targetAmplitudes = getNextLineInConfigurationFile(inFile);
-		String targetWidths = getNextLineInConfigurationFile(inFile);
-		String randomizeString = getNextLineInConfigurationFile(inFile);
-		String beepOnErrorString = getNextLineInConfigurationFile(inFile);
-		String buttonDownHighlightString = getNextLineInConfigurationFile(inFile);
-		String mouseOverHighlightString = getNextLineInConfigurationFile(inFile);
-		int errorThreshold = Integer.parseInt(getNextLineInConfigurationFile(inFile));
-		double hysteresis = Double.parseDouble(getNextLineInConfigurationFile(inFile));
-		String backgroundColorString = getNextLineInConfigurationFile(inFile);
-		String foregroundColorString = getNextLineInConfigurationFile(inFile);
-		String targetColorString = getNextLineInConfigurationFile(inFile);
-		String buttonDownColorString = getNextLineInConfigurationFile(inFile);
-		String mouseOverColorString = getNextLineInConfigurationFile(inFile);
+		FittsTaskTwoConfiguration c = null;
+		try
+		{
+			c = parseConfigurationData(inFile, fileName);
+		} catch (IOException e)
+		{
+			showError(e.getMessage());
+			System.exit(1);
+		}
+		inFile.close();
+		return c;
+	}
+
+	/*
+	 * Read the configuration without any dialogs, for the command-line tools (which may run headless). A missing or
+	 * malformed file is reported on stderr and null is returned.
+	 */
+	static FittsTaskTwoConfiguration loadConfigurationData(String filename)
+	{
+		String fileName = filename != null ? filename : "FittsTaskTwo.cfg";
+		Scanner inFile = null;
+		try
+		{
+			inFile = new Scanner(new File(fileName));
+			return parseConfigurationData(inFile, fileName);
+		} catch (IOException e)
+		{
+			System.err.println(e instanceof FileNotFoundException ? "Configuration file not found: " + fileName
+					: e.getMessage());
+			return null;
+		} finally
+		{
+			if (inFile != null)
+				inFile.close();
+		}
+	}
+
+	// parse the configuration variables (a missing or unreadable value is reported as an IOException)
+	private static FittsTaskTwoConfiguration parseConfigurationData(Scanner inFile, String fileName)
+			throws IOException
+	{
+		try
+		{
+			return parseConfigurationVariables(inFile, fileName);
+		} catch (NumberFormatException e)
+		{
+			throw new IOException("Error reading configuration file: " + fileName + " (" + e.getMessage() + ")");
+		}
+	}
+
+	private static FittsTaskTwoConfiguration parseConfigurationVariables(Scanner inFile, String fileName)
+			throws IOException
+	{
+		String participantCode = getRequiredLineInConfigurationFile(inFile, fileName);
+		String conditionCode = getRequiredLineInConfigurationFile(inFile, fileName);
+		String blockCode = getRequiredLineInConfigurationFile(inFile, fileName);
+		int numberOfTargets = Integer.parseInt(getRequiredLineInConfigurationFile(inFile, fileName));
+		String targetAmplitudes = getRequiredLineInConfigurationFile(inFile, fileName);
+		String targetWidths = getRequiredLineInConfigurationFile(inFile, fileName);
+		String randomizeString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String beepOnErrorString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String buttonDownHighlightString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String mouseOverHighlightString = getRequiredLineInConfigurationFile(inFile, fileName);
+		int errorThreshold = Integer.parseInt(getRequiredLineInConfigurationFile(inFile, fileName));
+		double hysteresis = Double.parseDouble(getRequiredLineInConfigurationFile(inFile, fileName));
+		String backgroundColorString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String foregroundColorString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String targetColorString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String buttonDownColorString = getRequiredLineInConfigurationFile(inFile, fileName);
+		String mouseOverColorString = getRequiredLineInConfigurationFile(inFile, fileName);
 
 		// some additional processing needed from some of the config args
 
@@ -517,54 +605,50 @@ public class FittsTaskTwo
 
 		args = backgroundColorString.trim().split("\\s+");
 		if (args.length != 3)
-		{
-			showError("Error reading background colour. 3 args needed!");
-			System.exit(1);
-		}
+			throw new IOException("Error reading background colour. 3 args needed!");
 		Color backgroundColor = new Color(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
 				Integer.parseInt(args[2]));
 
 		args = foregroundColorString.trim().split("\\s+");
 		if (args.length != 3)
-		{
-			showError("Error reading foreground colour. 3 args needed!");
-			System.exit(1);
-		}
+			throw new IOException("Error reading foreground colour. 3 args needed!");
 		Color foregroundColor = new Color(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
 				Integer.parseInt(args[2]));
 
 		args = targetColorString.trim().split("\\s+");
 		if (args.length != 3)
-		{
-			showError("Error reading target colour. 3 args needed!");
-			System.exit(1);
-		}
+			throw new IOException("Error reading target colour. 3 args needed!");
 		Color targetColor = new Color(Integer.parseInt(args[0]), Integer.parseInt(args[1]), Integer.parseInt(args[2]));
 
 		args = buttonDownColorString.trim().split("\\s+");
 		if (args.length != 3)
-		{
-			showError("Error reading button-down colour. 3 args needed!");
-			System.exit(1);
-		}
+			throw new IOException("Error reading button-down colour. 3 args needed!");
 		Color buttonDownColor = new Color(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
 				Integer.parseInt(args[2]));
 
 		args = mouseOverColorString.trim().split("\\s+");
 		if (args.length != 3)
-		{
-			showError("Error reading mouse-over colour. 3 args needed!");
-			System.exit(1);
-		}
+			throw new IOException("Error reading mouse-over colour. 3 args needed!");
 		Color mouseOverColor = new Color(Integer.parseInt(args[0]), Integer.parseInt(args[1]),
 				Integer.parseInt(args[2]));
 
-		// --- finished reading configuration variables ---
-
 		FittsTaskTwoConfiguration c = new FittsTaskTwoConfiguration(participantCode, conditionCode, blockCode,
 				numberOfTargets, a, w, randomize, beepOnError, buttonDownHighlight, mouseOverHighlight, errorThreshold,
 				hysteresis, backgroundColor, foregroundColor, targetColor, buttonDownColor, mouseOverColor);		
 		c.setFilename(fileName);
+
+		// optional arguments (name = value), if any, follow the colours
+		String s = getNextLineInConfigurationFile(inFile);
+		while (s != null && s.trim().length() > 0 && s.charAt(0) != '#')
+		{
+			args = s.split("=", 2);
+			if (args.length != 2 || !c.setOption(args[0].trim(), args[1].trim()))
+				throw new IOException("Error reading configuration argument: " + s);
+			s = getNextLineInConfigurationFile(inFile);
+		}
+
+		// --- finished reading configuration variables ---
+
 		return c;
 	}
 
@@ -581,95 +665,119 @@ public class FittsTaskTwo
 		return s;
 	}
 
+	private static String getRequiredLineInConfigurationFile(Scanner inFile, String fileName) throws IOException
+	{
+		String s = getNextLineInConfigurationFile(inFile);
+		if (s == null)
+			throw new IOException("Configuration file ended early: " + fileName);
+		return s;
+	}
+
 	static void showError(String msg)
 	{
 		JOptionPane.showMessageDialog(null, msg, "I/O Error", JOptionPane.ERROR_MESSAGE);
 	}
 }
 
-class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseListener, ComponentListener{
+class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseListener, ComponentListener,
+		FittsTaskTwoEngineListener
+{
 	// the following avoids a "warning" with Java 1.5.0 complier (?)
 	static final long serialVersionUID = 42L;
 
+	private static final long SINK_TIMEOUT = 5000; // ms to wait at the end for the results to reach the collector
+
 	private TaskPanel tp;
 	private MessagePanel sequenceResults;
 	private MessagePanel blockResults;
 	private MessagePanel repeatSequence;
-	private BufferedWriter bw1; // writer for sd1 file
-	private BufferedWriter bw2; // writer for sd2 file
-	private BufferedWriter bw3; // writer for sd3 file
-	private int trial;
-	private long movementTime;
-	private long buttonDown; // button down time
-	private long buttonUp; // button up time
-	private long tOld;
-	private long start;
-	private int[] xClick; // log of x clicks (including 1st click)
-	private Point[] clickPoint; // log of click point (including 1st click)
-	private ArrayList<String> traceData;
+	private FittsTaskTwoEngine engine; // trial, sequence, and block logic
+	private FittsTaskTwoLatency latency; // latency added by the software (written to the lat file)
+	private String fileName; // output data files (without extension)
 
 	// arguments read from configuration file
 	private int numberOfTargets; // number of trials per target condition
-	private int numberOfSequences; // number of target conditions
-	private int[] a; // target amplitude conditions
-	private int[] w; // target width conditions
-	private boolean randomize; // randomize target conditions (if 'yes')
 	private boolean beepOnError; // beep on error (if 'yes')
 	private boolean buttonDownHighlight; // highlight target on button-down
 	private boolean mouseOverHighlight; // highlight target on mouse-over
-	private double errorThreshold; // error rate threshold (%)
-	private double hysteresis; // hysteresis factor for out-of-target detection
 
-	private FittsTaskTwoBlock block;
-	private boolean beginTrial;
-	private boolean inTarget = false;
-	private long[] tSample;
-	private Point2D.Double[] xySample;
-	private int sIdx;
+	private FittsTaskTwoSampleRing sampleRing; // pointer samples from the sampler or event queue (null if not used)
+	private FittsTaskTwoSampler sampler; // polls the pointer into the sample ring (null if not used)
+	private FittsTaskTwoTrace published; // the samples from the sample ring being published (reused)
+	private BufferStrategy strategy; // for active rendering (null if not used)
+	private FittsTaskTwoEventQueue queue;
+	private ExecutorService worker; // sequence summary stats and sd1 data (off the Event Dispatch Thread)
+	private FittsTaskTwoRunningStats running; // throughput so far in the sequence, for the HUD (null if not shown)
+	private FittsTaskTwoPublisher events; // the session's events, for subscribers in this process
+	private FittsTaskTwoNetworkSink sink; // streams the results to the collector (null = none)
+	private FittsTaskTwoClock clock; // the time base of the events (the engine's)
 
 	FittsTaskTwoConfiguration c;
 
-	public FittsTaskTwoFrame(FittsTaskTwoConfiguration cArg) throws IOException
+	public FittsTaskTwoFrame(FittsTaskTwoConfiguration cArg, FittsTaskTwoEventQueue queueArg) throws IOException
 	{
 		c = cArg;
+		queue = queueArg;
 		numberOfTargets = c.getNumberOfTargets();
-		a = c.getA();
-		w = c.getW();
-		randomize = c.getRandomize();
 		beepOnError = c.getBeepOnError();
 		buttonDownHighlight = c.getButtonDownHighlight();
 		mouseOverHighlight = c.getMouseOverHighlight();
-		errorThreshold = c.getErrorThreshold();
-		hysteresis = c.getHysteresis();
-
-		numberOfSequences = a.length * w.length;
+		clock = new FittsTaskTwoClock(c.getHighResolutionClock());
 
-		tSample = new long[1000];
-		xySample = new Point2D.Double[1000];
+		latency = new FittsTaskTwoLatency();
 
-		// fill Point array now. Just set x's and y's later (faster!)
-		for (int i = 0; i < 1000; ++i)
-			xySample[i] = new Point2D.Double(-1.0, -1.0);
-
-		sIdx = 0;
-		beginTrial = false;
-		trial = 0;		
-		initVariables();
+		// open sd1, sd2, and sd3 files
+		fileName = "FittsTaskTwo-" + c.getParticipantCode() + "-" + c.getConditionCode() + "-"
+				+ c.getBlockCode();
+		FittsTaskTwoLog.setDumpFile(fileName + ".log");
 
-		traceData = new ArrayList<String>();
+		// if there is a journal for an unfinished session, offer to resume the session
+		final Object[] OPTIONS = { "No", "Yes" };
+		FittsTaskTwoJournalReplay replay = null;
+		if (c.getJournal() && new File(fileName + ".jnl").exists())
+		{
+			try
+			{
+				replay = new FittsTaskTwoJournalReplay(fileName + ".jnl", c, clock);
+			} catch (IOException e)
+			{
+				showError("Cannot resume from journal file (" + e.getMessage() + ")");
+			}
+			if (replay != null && (replay.isBlockComplete() || replay.getCompletedSequences() == 0))
+				replay = null; // nothing to resume
+			if (replay != null)
+			{
+				JLabel resume = new JLabel("Unfinished session found (" + replay.getCompletedSequences() + " of "
+						+ replay.getBlock().getSequences() + " sequences done). Resume?");
+				resume.setFont(new Font("sansserif", Font.PLAIN, 16));
+				if (JOptionPane.showOptionDialog(this, resume, "Resume", JOptionPane.YES_NO_OPTION,
+						JOptionPane.QUESTION_MESSAGE, null, OPTIONS, OPTIONS[1]) == 0)
+					replay = null;
+			}
+		}
 
-		block = new FittsTaskTwoBlock(numberOfSequences, numberOfTargets, a, w, randomize);
+		engine = replay != null ? new FittsTaskTwoEngine(c, replay.getBlock(), clock)
+				: new FittsTaskTwoEngine(c, clock);
+		engine.setGcMonitor(new FittsTaskTwoGcMonitor(clock), c.getGcRepeat());
 
-		// open sd1, sd2, and sd3 files
-		String fileName = "FittsTaskTwo-" + c.getParticipantCode() + "-" + c.getConditionCode() + "-"
-				+ c.getBlockCode();
+		// the sequence summary stats and the sd1 data are done on a worker, while the sequence summary is shown
+		worker = Executors.newSingleThreadExecutor(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "FittsTaskTwo worker");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		engine.setWorker(worker);
 
 		// Check to see if output data files exist. If so, issue an overwrite warning before proceeding.
 		JLabel warning = new JLabel("Output data file exists. Overwrite?");
 		warning.setFont(new Font("sansserif", Font.PLAIN, 16));
-		final Object[] OPTIONS = { "No", "Yes" };
-		if ((new File(fileName + ".sd1")).exists() || new File(fileName + ".sd2").exists()
-				|| new File(fileName + ".sd3").exists())
+		if (replay == null
+				&& ((new File(fileName + ".sd1")).exists() || new File(fileName + ".sd2").exists()
+						|| new File(fileName + ".sd3").exists() || new File(fileName + ".jnl").exists()))
 		{
 			if (JOptionPane.showOptionDialog(this, warning, "Caution", JOptionPane.YES_NO_OPTION,
 					JOptionPane.QUESTION_MESSAGE, null, OPTIONS, OPTIONS[0]) == 0)
@@ -678,41 +786,68 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 			}
 		}
 
+		FittsTaskTwoDataSink sd1 = null, sd2 = null, sd3 = null;
 		try
 		{
-			bw1 = new BufferedWriter(new FileWriter(fileName + ".sd1"));
-			bw2 = new BufferedWriter(new FileWriter(fileName + ".sd2"));
-			bw3 = new BufferedWriter(new FileWriter(fileName + ".sd3"));
+			sd1 = new FittsTaskTwoFileSink(fileName + ".sd1", c.getCommitSize(), c.getCommitInterval());
+			sd2 = new FittsTaskTwoFileSink(fileName + ".sd2", c.getCommitSize(), c.getCommitInterval());
+			sd3 = new FittsTaskTwoFileSink(fileName + ".sd3", c.getCommitSize(), c.getCommitInterval());
 		} catch (IOException e)
 		{
 			showError("I/O error opening data file");
 			System.exit(1);
 		}
 
-		// write header lines to data files (flush as well)
+		// the recorder writes the header lines, then the results from the engine
 		try
 		{
-			// sd1 header
-			String s = "App,Participant,Condition,Block,Trial," + FittsTaskTwoTrial.getTrialHeader() + "\n";
-			bw1.write(s, 0, s.length());
-			bw1.flush();
-
-			// sd2 header
-			s = "App,Participant,Condition,Block," + FittsTaskTwoBlock.getBlockHeader() + "\n";
-			bw2.write(s, 0, s.length());
-			bw2.flush();
-
-			// sd3 header
-			s = "TRACE DATA\n";
-			s += "App,Participant,Condition,Block,Sequence,A,W,Trial,from_x,from_y,to_x,to_y,{t_x_y}\n";
-			bw3.write(s, 0, s.length());
-			bw3.flush();
+			FittsTaskTwoRecorder recorder = new FittsTaskTwoRecorder(c, sd1, sd2, sd3, worker);
+			if (replay != null) // the sequences already done
+				for (int i = 0; i < replay.getCompletedSequences(); ++i)
+					recorder.replaySequence(replay.getBlock().getSequence(i), replay.getTraceRecords(i));
+			engine.addListener(recorder);
 		} catch (IOException e)
 		{
 			showError("Error writing header lines to data files");
 			System.exit(1);
 		}
 
+		// the journal gets each trial as soon as it is complete (maybe)
+		if (c.getJournal())
+		{
+			try
+			{
+				if (replay != null)
+					engine.addListener(new FittsTaskTwoJournal(fileName + ".jnl", c.getJournalSync(),
+							replay.getValidLength()));
+				else
+					engine.addListener(new FittsTaskTwoJournal(fileName + ".jnl", c.getJournalSync(),
+							engine.getBlock(), numberOfTargets, c.getA(), c.getW(), clock));
+			} catch (IOException e)
+			{
+				showError("I/O error opening journal file");
+				System.exit(1);
+			}
+		}
+		// the events go to any subscribers (before the frame, which waits in dialogs)
+		events = new FittsTaskTwoPublisher(worker);
+		engine.addListener(events);
+		engine.addListener(this);
+
+		// stream the results to a collector (maybe); the session goes on without it if it is not there
+		if (!c.getCollector().equals("none"))
+		{
+			try
+			{
+				sink = new FittsTaskTwoNetworkSink(c.getCollector(),
+						FittsTaskTwoNetworkSink.getStationName(FittsTaskTwoNetworkSink.getHostName(), c), c);
+				events.subscribeResults(sink);
+			} catch (IOException e)
+			{
+				showError("Cannot connect to collector " + c.getCollector() + " (" + e.getMessage() + ")");
+			}
+		}
+
 		// ----------------------------------
 		// construct and configure components
 		// ----------------------------------
@@ -728,11 +863,11 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		fore = new Color(153, 0, 0);
 		repeatSequence = new MessagePanel("", 42, back, fore);
 
-		// main task panel
-		int idxA = block.nextSequenceIndex() / w.length;
-		int idxW = block.nextSequenceIndex() % w.length;
-		tp = new TaskPanel(a[idxA], w[idxW], 1, numberOfSequences, c.getForegroundColor(), c.getTargetColor(),
-				c.getButtonDownColor(), c.getMouseOverColor());
+		// main task panel (with the HUD, maybe)
+		if (c.getHud())
+			running = new FittsTaskTwoRunningStats();
+		tp = new TaskPanel(c.getForegroundColor(), c.getTargetColor(), c.getButtonDownColor(),
+				c.getMouseOverColor());
 		tp.setBackground(c.getBackgroundColor());
 
 		// -------------
@@ -743,6 +878,23 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		tp.addMouseListener(this);
 		tp.addComponentListener(this);
 
+		// poll the pointer for the trace data (maybe)
+		if (c.getSampleRate() > 0)
+		{
+			sampleRing = new FittsTaskTwoSampleRing(16 * c.getSampleRate()); // 16 s worth
+			published = new FittsTaskTwoTrace();
+			engine.setMotionSamples(false);
+			sampler = new FittsTaskTwoSampler(sampleRing, c.getSampleRate(), clock);
+			sampler.start();
+		} else if (c.getRawMotion()) // or, trace each motion event before the event queue can coalesce it
+		{
+			sampleRing = new FittsTaskTwoSampleRing(16 * 1000); // 16 s worth at 1000 Hz
+			published = new FittsTaskTwoTrace();
+			engine.setMotionSamples(false);
+			queue.setRawMotion(sampleRing, this, clock);
+		}
+		latency.setQueue(queue.getDwell());
+
 		// ------------------
 		// arrange components
 		// ------------------
@@ -755,6 +907,24 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		p.add(p1, "Center");
 		p.setPreferredSize(Toolkit.getDefaultToolkit().getScreenSize());
 		this.setContentPane(p);
+
+		// dump the diagnostic log on request
+		p.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("ctrl shift L"), "dumpLog");
+		p.getActionMap().put("dumpLog", new AbstractAction()
+		{
+			public void actionPerformed(ActionEvent ae)
+			{
+				try
+				{
+					FittsTaskTwoLog.dumpToFile();
+				} catch (IOException e)
+				{
+					showError("I/O error writing log file");
+				}
+			}
+		});
+
+		engine.start();
 	}
 
 	void showError(String msg)
@@ -762,11 +932,112 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		JOptionPane.showMessageDialog(null, msg, "I/O Error", JOptionPane.ERROR_MESSAGE);
 	}
 
-	// init variables that depend on configuration parameters
-	private void initVariables()
+	/**
+	 * Show the frame in a full-screen exclusive window (if supported) and draw it actively, through a
+	 * BufferStrategy. Each change (e.g., a new target) is drawn and shown at once, on the event dispatch thread,
+	 * instead of when the RepaintManager gets around to it.
+	 */
+	public void showFullScreen()
+	{
+		GraphicsDevice gd = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice();
+		this.setUndecorated(true);
+		this.setIgnoreRepaint(true);
+		tp.setIgnoreRepaint(true);
+		if (gd.isFullScreenSupported())
+			gd.setFullScreenWindow(this);
+		else
+		{
+			this.setExtendedState(JFrame.MAXIMIZED_BOTH);
+			this.pack();
+			this.setVisible(true);
+		}
+		this.validate();
+		this.createBufferStrategy(2);
+		strategy = this.getBufferStrategy();
+		render();
+	}
+
+	// draw the task panel into the back buffer and show it (active rendering)
+	private void render()
 	{
-		xClick = new int[numberOfTargets + 1]; // need one extra for initial click to begin sequence
-		clickPoint = new Point[numberOfTargets + 1];
+		Point p = SwingUtilities.convertPoint(tp, 0, 0, this);
+		do
+		{
+			do
+			{
+				Graphics g = strategy.getDrawGraphics();
+				g.setColor(this.getContentPane().getBackground());
+				g.fillRect(0, 0, this.getWidth(), this.getHeight());
+				g.translate(p.x, p.y);
+				g.setClip(0, 0, tp.getWidth(), tp.getHeight());
+				tp.render(g);
+				g.dispose();
+			} while (strategy.contentsRestored());
+			strategy.show();
+		} while (strategy.contentsLost());
+		Toolkit.getDefaultToolkit().sync();
+
+		latency.paintDone();
+		engine.presented(clock.now()); // target onset (for the sd1 file)
+	}
+
+	// move the pointer samples up to time 'until' from the sample ring to the engine's trace
+	private void drainSamples(long until)
+	{
+		Point origin = tp.isShowing() ? tp.getLocationOnScreen() : new Point(0, 0); // samples are in screen coordinates
+		publishSamples(until, origin);
+		engine.drain(sampleRing, until, origin.x, origin.y);
+	}
+
+	/**
+	 * The event queue asks the window before it merges a motion event with one still waiting, so the queue can count
+	 * the events merged (see FittsTaskTwoEventQueue). Overriding this lets the queue ask.
+	 */
+	protected AWTEvent coalesceEvents(AWTEvent existingEvent, AWTEvent newEvent)
+	{
+		return queue != null ? queue.coalesceEvents(existingEvent, newEvent) : null;
+	}
+
+	/*
+	 * Publish a sample for the trial in progress, as captured (before the trace decimates it). With a sample ring, the
+	 * samples up to the time of each mouse event are published as the event is handled, so the subscribers get them as
+	 * the pointer moves (a sample up to then cannot belong to the next trial, since the release comes later).
+	 */
+	private void publishSample(long t, int x, int y)
+	{
+		if (events.hasSubscribers() && engine.getTrial() > 0)
+			events.sample(engine, t - engine.getTrialStart(), x, y);
+	}
+
+	// publish the samples in the sample ring up to time 'until' that are not published yet
+	private void publishSamples(long until, Point origin)
+	{
+		if (!events.hasSubscribers() || engine.getTrial() == 0)
+			return;
+		if (origin == null)
+			origin = tp.isShowing() ? tp.getLocationOnScreen() : new Point(0, 0);
+		published.clear();
+		sampleRing.peek(until, published, engine.getTrialStart(), origin.x, origin.y);
+		for (int i = 0; i < published.size(); ++i)
+			events.sample(engine, published.getT(i), published.getX(i), published.getY(i));
+	}
+
+	// publish the samples for a motion event (from the sample ring, or the event itself)
+	private void publishMotion(long t, int x, int y)
+	{
+		if (sampleRing != null)
+			publishSamples(t, null);
+		else
+			publishSample(t, x, y);
+	}
+
+	/**
+	 * The events of the session (pointer samples, and the trial, sequence, and block results). Subscribers get the
+	 * events on their own threads, and do not slow the task (see FittsTaskTwoPublisher).
+	 */
+	public Flow.Publisher<FittsTaskTwoEvent> getEvents()
+	{
+		return events;
 	}
 
 	// -----------------------------------------
@@ -778,35 +1049,27 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		// avoid occasional weird exception if mouse moved before task panel exists
 		if (tp == null)
 			return;
+		latency.eventStart(me);
 
-		// determine if cursor is inside the target
-		if (!inTarget && tp.inTarget(me.getX(), me.getY(), 1.0))
-			inTarget = true;
-		else if (inTarget && !tp.inTarget(me.getX(), me.getY(), hysteresis))
-			inTarget = false;
+		long when = clock.eventTime(me);
+		engine.move(when, me.getX(), me.getY());
+		publishMotion(when, me.getX(), me.getY());
 
 		// button-down highlighting (maybe)
 		if (buttonDownHighlight)
-			if (inTarget)
+			if (engine.isInTarget())
 				tp.buttonDownHighlightOn();
 			else
 				tp.buttonDownHighlightOff();
 
 		// mouse-over highlighting (maybe)
 		if (mouseOverHighlight && !buttonDownHighlight)
-			if (inTarget)
+			if (engine.isInTarget())
 				tp.mouseOverHighlightOn();
 			else
 				tp.mouseOverHighlightOff();
 
-		if (trial > 0)
-		{
-			if (beginTrial)
-				beginTrial = false;
-			tSample[sIdx] = me.getWhen() - buttonUp;
-			xySample[sIdx].x = me.getX();
-			xySample[sIdx++].y = me.getY();
-		}
+		latency.eventEnd();
 	}
 
 	public void mouseMoved(MouseEvent me)
@@ -814,28 +1077,20 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		// avoid occasional weird exception if mouse moved before task panel exists
 		if (tp == null)
 			return;
+		latency.eventStart(me);
 
-		// determine if cursor is inside target
-		if (!inTarget && tp.inTarget(me.getX(), me.getY(), 1.0))
-			inTarget = true;
-		else if (inTarget && !tp.inTarget(me.getX(), me.getY(), hysteresis))
-			inTarget = false;
+		long when = clock.eventTime(me);
+		engine.move(when, me.getX(), me.getY());
+		publishMotion(when, me.getX(), me.getY());
 
 		// mouse-over highlighting (maybe)
 		if (mouseOverHighlight)
-			if (inTarget)
+			if (engine.isInTarget())
 				tp.mouseOverHighlightOn();
 			else
 				tp.mouseOverHighlightOff();
 
-		if (trial > 0)
-		{
-			if (beginTrial)
-				beginTrial = false;
-			tSample[sIdx] = me.getWhen() - buttonUp;
-			xySample[sIdx].x = me.getX();
-			xySample[sIdx++].y = me.getY();
-		}
+		latency.eventEnd();
 	}
 
 	// -----------------------------------
@@ -858,249 +1113,187 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 
 	public void mousePressed(MouseEvent me)
 	{
-		buttonDown = me.getWhen();
-		beginTrial = true;
-
-		// determine if cursor is inside target
-		if (!inTarget && tp.inTarget(me.getX(), me.getY(), 1.0))
-			inTarget = true;
-		else if (inTarget && !tp.inTarget(me.getX(), me.getY(), hysteresis))
-			inTarget = false;
+		latency.eventStart(me);
+		long when = clock.eventTime(me);
+		if (sampleRing != null)
+			drainSamples(when);
+		engine.press(when, me.getX(), me.getY());
+		publishSample(when, me.getX(), me.getY());
 
 		// button-down highlighting (maybe)
 		if (buttonDownHighlight)
-			if (inTarget)
+			if (engine.isInTarget())
 				tp.buttonDownHighlightOn();
 			else
 				tp.buttonDownHighlightOff();
 
-		if (trial > 0)
-		{
-			tSample[sIdx] = me.getWhen() - buttonUp;
-			xySample[sIdx].x = me.getX();
-			xySample[sIdx++].y = me.getY();
-		}
+		latency.eventEnd();
 	}
 
-	// ===========================
-	// M O U S E _ R E L E A S E D
-	// ===========================
+	// a mouse button was released (the engine does the work, see the FittsTaskTwoEngineListener methods below)
 
 	public void mouseReleased(MouseEvent me)
 	{
-		int x = me.getX();
-		int y = me.getY();
-
-		// determine if cursor is inside target
-		if (!inTarget && tp.inTarget(me.getX(), me.getY(), 1.0))
-			inTarget = true;
-		else if (inTarget && !tp.inTarget(me.getX(), me.getY(), hysteresis))
-			inTarget = false;
-
-		// do not allow a sequence to begin unless the first selection is inside the start target
-		if (trial == 0 && !inTarget)
-			return;
-
-		// at beginning of 1st trial, set buttonUp now
-		if (trial == 0)
-			buttonUp = me.getWhen();
-
-		// last trace sample (will be overwritten for first sample of first trial)
-		tSample[sIdx] = me.getWhen() - buttonUp; // old button up
-		xySample[sIdx].x = me.getX();
-		xySample[sIdx++].y = me.getY();
-
-		buttonUp = me.getWhen(); // new button up
+		latency.eventStart(me);
+		long when = clock.eventTime(me);
+		try
+		{
+			if (sampleRing != null)
+			{
+				drainSamples(when);
+				engine.setDropped(sampleRing.getDropped());
+			}
+			engine.setCoalesced(queue.getCoalesced());
+			engine.release(when, me.getX(), me.getY());
+		} catch (IOException e)
+		{
+			showError("I/O error writing to data files");
+			System.exit(1);
+		} finally
+		{
+			latency.eventEnd();
+		}
+	}
 
-		xClick[trial] = x;
-		clickPoint[trial] = new Point(x, y);
-		String s = "";
+	// ------------------------------------------------
+	// implement FittsTaskTwoEngineListener methods (6)
+	// ------------------------------------------------
 
-		if (trial == 0) // beginning of a sequence of n trials
+	public void sequenceStarted(FittsTaskTwoEngine e)
+	{
+		tp.configure();
+		if (running != null)
 		{
-			start = buttonUp;
-			sIdx = 0;
+			running.clear();
+			tp.updateHud();
 		}
-		tOld = movementTime;
-		movementTime = buttonUp - start;
+		tp.refresh(null);
+	}
+
+	public void targetAdvanced(FittsTaskTwoEngine e)
+	{
+		tp.advanceActiveTarget();
+	}
 
-		int error = inTarget ? 0 : 1;
-		if (error == 1 && beepOnError)
+	public void trialComplete(FittsTaskTwoEngine e, FittsTaskTwoTrial t, FittsTaskTwoTraceRecord r)
+	{
+		if (t.getErr() == 1 && beepOnError)
 			this.getToolkit().beep();
 
-		if (trial > 0) // process trial (first click doesn't count)
+		// the HUD is drawn when the panel is repainted for the next target
+		if (running != null)
 		{
-			FittsTaskTwoTrial t = block.getSequence(block.getIDX()).getTrial(trial - 1);
-			t.setXFrom(tp.centerPoint[tp.targetOrder[trial - 1]].x);
-			t.setYFrom(tp.centerPoint[tp.targetOrder[trial - 1]].y);
-			t.setXTo(tp.centerPoint[tp.targetOrder[trial]].x);
-			t.setYTo(tp.centerPoint[tp.targetOrder[trial]].y);
-			t.setXSelect(xySample[sIdx - 1].x);
-			t.setYSelect(xySample[sIdx - 1].y);
-
-			// set the Ae and deltaX for the trial (let the Throughput class do the work)
-			t.setAe(Throughput.getTrialAe(new Point2D.Double(t.xFrom, t.yFrom), new Point2D.Double(t.xTo, t.yTo),
-					new Point2D.Double(t.xSelect, t.ySelect)));
-			t.setDx(Throughput.getTrialDeltaX(new Point2D.Double(t.xFrom, t.yFrom), new Point2D.Double(t.xTo, t.yTo),
-					new Point2D.Double(t.xSelect, t.ySelect)));
-
-			t.setPt(movementTime - tOld - (buttonUp - buttonDown));
-			t.setSt(buttonUp - buttonDown);
-			t.setMt(movementTime - tOld);
-			t.setErr(error);
-
-			// trace-related data for sd3 file (store in Trial object)
-			t.setTraceTimestamps(tSample, sIdx);
-			t.setTracePoints(xySample, sIdx);
-
-			// collect trace data at end of trial
-			String leadin = "FittsTaskTwo" + "," + c.getParticipantCode() + "," + c.getConditionCode() + ","
-					+ c.getBlockCode() + "," + tp.getCurrentSequence() + "," + Math.round(t.amplitude) + ","
-					+ Math.round(t.width) + "," + trial + "," + Math.round(t.xFrom) + "," + Math.round(t.yFrom) + ","
-					+ Math.round(t.xTo) + "," + Math.round(t.yTo) + ",";
-			String s1 = leadin;
-			s1 += "t=,";
-			for (int i = 0; i < sIdx; ++i)
-				s1 += tSample[i] + ",";
-			s1 += "\n";
-			s1 += leadin;
-			s1 += "x=,";
-			for (int i = 0; i < sIdx; ++i)
-				s1 += Math.round(xySample[i].x) + ",";
-			s1 += "\n";
-			s1 += leadin;
-			s1 += "y=,";
-			for (int i = 0; i < sIdx; ++i)
-				s1 += Math.round(xySample[i].y) + ",";
-			s1 += "\n";
-			traceData.add(s1);
-
-			// 1st sample of next trial begins at same x,y but with t = 0
-			sIdx = 0; // start again
-			tSample[sIdx] = 0;
-			xySample[sIdx++] = new Point2D.Double(x, y);
+			running.add(t);
+			tp.updateHud();
 		}
+	}
 
-		// prepare for next trial
+	public void sequenceRepeated(FittsTaskTwoEngine e, FittsTaskTwoSequence s)
+	{
+		repeatSequence.setText(e.isGcRepeated() ? s.getGcRepeatSequence() : s.getRepeatSequence());
+		showMessage(repeatSequence, "Repeat Sequence");
+	}
 
-		if (trial < numberOfTargets) // not end of sequence
-		{
-			tp.advanceActiveTarget(trial);
-			++trial;
-		} else
-		// end of sequence, see if it needs to be repeated
+	public void sequenceComplete(FittsTaskTwoEngine e, final FittsTaskTwoSequence s)
+	{
+		// present sequence results in popup window (the results fill in when the worker has computed them)
+		sequenceResults.setText("Computing results ...");
+		worker.execute(new Runnable()
 		{
-			block.getSequence(block.getIDX()).computeSequenceSummaryStats();
-			double errorRate = block.getSequence(block.getIDX()).getER();
-
-			if (errorRate > errorThreshold) // sequence must be repeated
-			{
-				// ++sequenceRepeatCount;
-				block.getSequence(block.getIDX()).incrementSequenceRepeatCount();
-				s = block.getSequence(block.getIDX()).getRepeatSequence();
-				repeatSequence.setText(s);
-				JOptionPane.showMessageDialog(this, repeatSequence, "Repeat Sequence", JOptionPane.INFORMATION_MESSAGE);
-
-				traceData.clear();
-
-				trial = 0;
-				int idxA = block.nextSequenceIndex() / w.length;
-				int idxW = block.nextSequenceIndex() % w.length;
-				tp.setNewAW(a[idxA], w[idxW], block.getIDX() + 1);
-				tp.resetActiveTarget();
-				tp.repaint();
-				return;
-			}
-			// fs.getSequence(fs.nextSequenceIndex()).setSequenceRepeatCount(sequenceRepeatCount);
-
-			// write trial data and trace data at end of sequence
-			for (int i = 0; i < block.getSequence(block.getIDX()).getTrials(); ++i)
+			public void run()
 			{
-				// write trial data to sd1 file
-				StringBuilder sb = new StringBuilder();
-				sb.append("FittsTaskTwo,");
-				sb.append(c.getParticipantCode()).append(',');
-				sb.append(c.getConditionCode()).append(',');
-				sb.append(c.getBlockCode()).append(',');
-				sb.append(block.getSequence(block.getIDX()).getTrialData(i)).append('\n');
-				try
-				{
-					bw1.write(sb.toString(), 0, sb.length());
-					bw1.flush();
-				} catch (IOException e)
+				final String summary = s.getSequenceSummary();
+				SwingUtilities.invokeLater(new Runnable()
 				{
-					showError("I/O error writing to sd1 file");
-					System.exit(1);
-				}
-
-				// write trace data to sd3 file
-				Iterator<String> it;
-				it = traceData.iterator();
-				while (it.hasNext())
-				{
-					final String tmp = it.next();
-					try
-					{
-						bw3.write(tmp, 0, tmp.length());
-						bw3.flush();
-					} catch (IOException e)
+					public void run()
 					{
-						showError("I/O error writing to sd3 file");
-						System.exit(1);
+						sequenceResults.setText(summary);
+						Window w = SwingUtilities.getWindowAncestor(sequenceResults);
+						if (w != null && w.isVisible())
+							w.pack();
+						sequenceResults.repaint();
 					}
-				}
-				traceData.clear();
+				});
 			}
+		});
+		showMessage(sequenceResults, "Sequence summary");
+	}
 
-			// present sequence results in popup window
-			sequenceResults.setText(block.getSequence(block.getIDX()).getSequenceSummary());
-			JOptionPane.showMessageDialog(this, sequenceResults, "Sequence summary", JOptionPane.INFORMATION_MESSAGE);
+	public void blockComplete(FittsTaskTwoEngine e, final FittsTaskTwoBlock b)
+	{
+		if (sampler != null)
+			sampler.stop();
+		writeLatencyFile();
 
-			if (block.lastSequence()) // end of last sequence (done!)
+		// present summary block results in popup window (the results fill in when the worker has the block arrays)
+		blockResults.setText("Computing results ...");
+		worker.execute(new Runnable()
+		{
+			public void run()
 			{
-				block.buildArrays();
-				for (int i = 0; i < block.getSequences(); ++i)
+				final String summary = b.getBlockSummary();
+				SwingUtilities.invokeLater(new Runnable()
 				{
-					s = "FittsTaskTwo" + "," + c.getParticipantCode() + "," + c.getConditionCode() + ","
-							+ c.getBlockCode() + "," + block.getSequenceData(i) + "\n";
-					try
+					public void run()
 					{
-						bw2.write(s, 0, s.length());
-					} catch (IOException e)
-					{
-						showError("I/O error writing data to sd2 file");
-						System.exit(1);
+						blockResults.setText(summary);
+						Window w = SwingUtilities.getWindowAncestor(blockResults);
+						if (w != null && w.isVisible())
+							w.pack();
+						blockResults.repaint();
 					}
-				}
-				try
-				{
-					bw1.close();
-					bw2.close();
-				} catch (IOException e)
-				{
-					showError("Error closing data files");
-					System.exit(1);
-				}
+				});
+			}
+		});
+		showMessage(blockResults, "Block summary");
 
-				// present summary block results in popup window
-				blockResults.setText(block.getBlockSummary());
-				JOptionPane.showMessageDialog(this, blockResults, "Block summary", JOptionPane.INFORMATION_MESSAGE);
+		// let the worker finish the data files (the sd2 data are written after the block arrays)
+		worker.shutdown();
+		try
+		{
+			worker.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException ex)
+		{
+		}
 
-				System.exit(0); // we're done!
-			} else
-			// prepare for the next sequence
+		// give the collector the rest of the results (they are in the data files anyway)
+		if (sink != null)
+		{
+			try
+			{
+				sink.awaitClosed(SINK_TIMEOUT);
+			} catch (InterruptedException ex)
 			{
-				beginTrial = true;
-				trial = 0;
-				block.nextSequence();
-				int idxA = block.nextSequenceIndex() / w.length;
-				int idxW = block.nextSequenceIndex() % w.length;
-				tp.setNewAW(a[idxA], w[idxW], block.getIDX() + 1);
-				tp.resetActiveTarget();
-				tp.repaint();
 			}
 		}
-	} // end mouseReleased
+		System.exit(0); // we're done!
+	}
+
+	// popup window (time spent in the dialog is not part of the handler latency)
+	private void showMessage(MessagePanel panel, String title)
+	{
+		latency.eventEnd();
+		JOptionPane.showMessageDialog(this, panel, title, JOptionPane.INFORMATION_MESSAGE);
+		if (strategy != null)
+			render(); // the window does not repaint itself with active rendering
+	}
+
+	// latency summary for the session (lat file)
+	private void writeLatencyFile()
+	{
+		try
+		{
+			FittsTaskTwoDataSink lat = new FittsTaskTwoFileSink(fileName + ".lat", 0, 0);
+			lat.write("LATENCY\n");
+			lat.write("App,Participant,Condition,Block," + FittsTaskTwoLatency.getLatencyHeader() + "\n");
+			latency.write(lat, "FittsTaskTwo" + "," + c.getParticipantCode() + "," + c.getConditionCode() + ","
+					+ c.getBlockCode() + ",");
+			lat.close();
+		} catch (IOException e)
+		{
+			showError("I/O error writing to lat file");
+		}
+	}
 
 	// ---------------------------------------
 	// implement ComponentListener methods (4)
@@ -1118,8 +1311,9 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 	{
 		if (tp.getWidth() > 0)
 		{
+			engine.setSize(tp.getWidth(), tp.getHeight());
 			tp.configure();
-			tp.repaint();
+			tp.refresh(null);
 		}
 	}
 
@@ -1202,24 +1396,22 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 		// the following avoids a "warning" with Java 1.5.0 complier (?)
 		static final long serialVersionUID = 42L;
 
-		private int a;
-		private int w;
-		private int currentSequence;
-		private int totalSequences;
+		/*
+		 * The panel only renders the targets. The geometry comes from the engine's layout and the active target from
+		 * the engine.
+		 */
 		private String progress1, progress2;
+		private String[] hud; // lines of the HUD (null if not shown)
 		private Ellipse2D.Double[] target;
-		int activeTarget = -1;
-		public Point[] centerPoint;
-		public int[] targetOrder;
 		Color foregroundColor;
 		Color targetColor;
 		Color buttonDownColor;
 		Color mouseOverColor;
+		Color activeColor; // fill colour of the active target (target colour or a highlight colour)
 
-		TaskPanel(int aArg, int wArg, int cbArg, int tbArg, Color foregroundColorArg, Color targetColorArg,
-				Color buttonDownColorArg, Color mouseOverColorArg)
+		TaskPanel(Color foregroundColorArg, Color targetColorArg, Color buttonDownColorArg, Color mouseOverColorArg)
 		{
-                        System.out.println("TaskPanel()");
+			FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.PANEL, numberOfTargets);
 			foregroundColor = foregroundColorArg;
 			targetColor = targetColorArg;
 			buttonDownColor = buttonDownColorArg;
@@ -1227,102 +1419,83 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 			target = new Ellipse2D.Double[numberOfTargets];
 			for (int i = 0; i < target.length; ++i)
 				target[i] = new Ellipse2D.Double(0, 0, 0, 0);
-			centerPoint = new Point[numberOfTargets];
-			currentSequence = cbArg;
-			totalSequences = tbArg;
-			setNewAW(aArg, wArg, currentSequence);
 			this.setBackground(Color.WHITE);
 			this.setBorder(BorderFactory.createLineBorder(Color.gray));
-
-			/*
-			 * Build an array of indices of the order of highlighted targets. The algorithm is slightly different if the
-			 * number of targets is odd. An advantage of using an odd number of targets is that the movement amplitude
-			 * is exactly the same for all trials. If the number of targets is even, the movement amplitude is different
-			 * from one trial to the next. "+1" is used because the first selection is used just to start the sequence.
-			 */
-			targetOrder = new int[numberOfTargets + 1];
-			targetOrder[0] = numberOfTargets / 4 * 3; // 1st target is at the top (3/4 around circle)
-
-			int inc = numberOfTargets / 2 + numberOfTargets % 2;
-			if (numberOfTargets % 2 == 0) // even number of targets
-				for (int i = 1; i < numberOfTargets + 1; ++i)
-					targetOrder[i] = (targetOrder[i - 1] + (numberOfTargets + 1) / 2 + ((i + 1) % 2)) % numberOfTargets;
-			else
-				// odd number of targets
-				for (int i = 1; i < numberOfTargets + 1; ++i)
-					targetOrder[i] = (inc + targetOrder[i - 1]) % numberOfTargets;
-
-			resetActiveTarget();
-		}
-
-		private void setNewAW(int aArg, int wArg, int cbArg)
-		{
-			a = aArg;
-			w = wArg;
-			currentSequence = cbArg;
-			progress1 = "Sequence " + currentSequence + " of " + totalSequences;
-			progress2 = "(A = " + a + ", W = " + w + ")";
 			configure();
 		}
 
+		// update from the engine (new sequence or new layout)
 		private void configure()
 		{
-                        System.out.println("configure()");
-			double centreX = this.getWidth() / 2;
-			double centreY = this.getHeight() / 2;
+			FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.CONFIGURE, engine.getSequenceNumber(),
+					engine.getNumberOfSequences(), numberOfTargets);
+			FittsTaskTwoLayout layout = engine.getLayout();
+			double w = layout.getWidth();
 			for (int i = 0; i < numberOfTargets; ++i)
 			{
-				double x = centreX + (a / 2) * Math.cos(2 * Math.PI * ((double)i / numberOfTargets));
-				double y = centreY + (a / 2) * Math.sin(2 * Math.PI * ((double)i / numberOfTargets));
-				centerPoint[i] = new Point((int)Math.round(x), (int)Math.round(y));
-				target[i].x = x - w / 2;
-				target[i].y = y - w / 2;
+				target[i].x = layout.getX(i) - w / 2.0;
+				target[i].y = layout.getY(i) - w / 2.0;
 				target[i].width = w;
 				target[i].height = w;
-                                System.out.println("Target("+i+"): ");
-                                System.out.println("x: "+target[i].x+", y: "+target[i].y);
+				FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.TARGET, i, target[i].x, target[i].y);
 			}
+			progress1 = "Sequence " + engine.getSequenceNumber() + " of " + engine.getNumberOfSequences();
+			progress2 = "(A = " + engine.getA() + ", W = " + engine.getW() + ")";
+			activeColor = targetColor;
+		}
+
+		// update the HUD from the running stats (shown the next time the panel is painted)
+		private void updateHud()
+		{
+			if (hud == null)
+				hud = new String[6];
+			hud[0] = String.format("n = %d", running.getTrials());
+			hud[1] = String.format("Ae = %.1f", running.getAe());
+			hud[2] = String.format("We = %.1f", running.getWe());
+			hud[3] = String.format("IDe = %.2f bits", running.getIDe());
+			hud[4] = String.format("MT = %.0f ms", running.getMT());
+			hud[5] = String.format("TP = %.2f bits/s", running.getTP());
 		}
 
 		public void paintComponent(Graphics g)
 		{
 			super.paintComponent(g);
 			paintTargets(g);
+			latency.paintDone();
+			engine.presented(clock.now()); // target onset (approximate: the back buffer is not shown yet)
 		}
 
-		public boolean inTarget(double x, double y, double hysteresisFactor)
+		// draw the panel for active rendering (as paintComponent does)
+		private void render(Graphics g)
 		{
-			// kludge to avoid exception if mouse-over occurs before targets exist
-			if (target == null || activeTarget == -1)
-				return false;
-
-			double xx = target[activeTarget].x;
-			double yy = target[activeTarget].y;
-			double w = target[activeTarget].width;
-			double h = target[activeTarget].height;
-			w *= hysteresisFactor;
-			h *= hysteresisFactor;
-			xx = xx - 0.5 * (w - target[activeTarget].width);
-			yy = yy - 0.5 * (h - target[activeTarget].height);
-			Ellipse2D.Double virtualTarget = new Ellipse2D.Double(xx, yy, w, h);
-
-			return virtualTarget.contains(x, y);
+			g.setColor(this.getBackground());
+			g.fillRect(0, 0, this.getWidth(), this.getHeight());
+			if (this.getBorder() != null)
+				this.getBorder().paintBorder(this, g, 0, 0, this.getWidth(), this.getHeight());
+			paintTargets(g);
 		}
 
-		public void clear()
+		// show the changes (r = the region that changed, null = the whole panel)
+		private void refresh(Rectangle r)
 		{
-			this.repaint();
+			latency.repaintRequested();
+			if (strategy != null)
+				FittsTaskTwoFrame.this.render();
+			else if (r != null)
+				this.repaint(r);
+			else
+				this.repaint();
 		}
 
-		public void advanceActiveTarget(int trial)
+		public void clear()
 		{
-			activeTarget = targetOrder[trial + 1];
-			this.repaint();
+			refresh(null);
 		}
 
-		public void resetActiveTarget()
+		public void advanceActiveTarget()
 		{
-			activeTarget = targetOrder[0]; // first target is at top (3/4 around circle)
+			activeColor = targetColor;
+			refresh(null);
 		}
 
 		private void paintTargets(Graphics g)
@@ -1332,13 +1505,15 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 			final Font MESSAGE_FONT = new Font("SannsSerif", Font.ITALIC, 24);
 
 			Graphics2D g2 = (Graphics2D)g;
+			Rectangle clip = g2.getClipBounds(); // only the dirty region, for a highlight change
 			g2.setColor(foregroundColor);
 			g2.setStroke(INK_STROKE); // set desired stroke
 			for (int i = 0; i < numberOfTargets; ++i)
-				g2.draw(target[i]);
+				if (clip == null || target[i].intersects(clip))
+					g2.draw(target[i]);
 
-			g2.setColor(targetColor);
-			g2.fill(target[activeTarget]);
+			g2.setColor(activeColor);
+			g2.fill(target[engine.getActiveTarget()]);
 
 			// output progress message
 			g2.setColor(MESSAGE_COLOR);
@@ -1346,39 +1521,64 @@ class FittsTaskTwoFrame extends JFrame implements MouseMotionListener, MouseList
 			int height = g2.getFontMetrics().getHeight(); // of characters (for given font)
 			g2.drawString(progress1, 10, 10 + height);
 			g2.drawString(progress2, 10, 10 + 2 * height);
+
+			if (hud != null)
+				paintHud(g2, clip);
 		}
 
+		// the HUD goes in the top-right corner, on top of the targets (which are centred, so it does not cover them)
+		private void paintHud(Graphics2D g2, Rectangle clip)
+		{
+			final Color HUD_COLOR = new Color(96, 96, 96);
+			final Font HUD_FONT = new Font("Monospaced", Font.PLAIN, 16);
+
+			g2.setColor(HUD_COLOR);
+			g2.setFont(HUD_FONT);
+			FontMetrics fm = g2.getFontMetrics();
+			int width = 0;
+			for (int i = 0; i < hud.length; ++i)
+				width = Math.max(width, fm.stringWidth(hud[i]));
+			Rectangle bounds = new Rectangle(this.getWidth() - 10 - width, 10, width, hud.length * fm.getHeight());
+			if (clip != null && !clip.intersects(bounds))
+				return;
+			for (int i = 0; i < hud.length; ++i)
+				g2.drawString(hud[i], bounds.x, bounds.y + fm.getAscent() + i * fm.getHeight());
+		}
+
+		/*
+		 * The highlight methods are called for every mouse event, but the active target is only repainted when its
+		 * colour actually changes (i.e., the pointer enters or exits the target, or the button goes down). Only the
+		 * bounds of the active target are repainted, through Swing's (double-buffered) repaint manager. (With active
+		 * rendering, the panel is drawn and shown at once.)
+		 */
 		public void buttonDownHighlightOn()
 		{
-			Graphics2D g2 = (Graphics2D)this.getGraphics();
-			g2.setColor(buttonDownColor);
-			g2.fill(target[activeTarget]);
+			setActiveColor(buttonDownColor);
 		}
 
 		public void buttonDownHighlightOff()
 		{
-			Graphics2D g2 = (Graphics2D)this.getGraphics();
-			g2.setColor(targetColor);
-			g2.fill(target[activeTarget]);
+			setActiveColor(targetColor);
 		}
 
 		public void mouseOverHighlightOn()
 		{
-			Graphics2D g2 = (Graphics2D)this.getGraphics();
-			g2.setColor(mouseOverColor);
-			g2.fill(target[activeTarget]);
+			setActiveColor(mouseOverColor);
 		}
 
 		public void mouseOverHighlightOff()
 		{
-			Graphics2D g2 = (Graphics2D)this.getGraphics();
-			g2.setColor(targetColor);
-			g2.fill(target[activeTarget]);
+			setActiveColor(targetColor);
 		}
 
-		public int getCurrentSequence()
+		private void setActiveColor(Color c)
 		{
-			return currentSequence;
+			if (c.equals(activeColor))
+				return;
+			activeColor = c;
+			Rectangle r = target[engine.getActiveTarget()].getBounds();
+			r.grow(2, 2); // allow for the stroke
+			refresh(r);
 		}
 	}
 }
@@ -1,4 +1,6 @@
 import java.util.Random;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 // -------------------
 // F I T T S B L O C K
@@ -21,6 +23,7 @@ class FittsTaskTwoBlock
 	private double[] ide;
 	private double[] tp;
 	private int[] sequenceOrder; // this array controls the order of presenting
+	private FutureTask<Void> arrays; // if the arrays are built in the background, this is the build (the getters wait)
 									// sequences
 
 	FittsTaskTwoBlock(int numberOfSequencesArg, int numberOfTrialsArg, int[] aArg, int[] wArg, boolean randomize)
@@ -46,6 +49,22 @@ class FittsTaskTwoBlock
 				sequenceOrder[i] = tmp; // random order (more or less)
 			}
 
+		initArrays();
+	}
+
+	// a block with the sequences in the given order (e.g., from a journal, to resume a session)
+	FittsTaskTwoBlock(int numberOfSequencesArg, int numberOfTrialsArg, int[] aArg, int[] wArg, int[] sequenceOrderArg)
+	{
+		numberOfSequences = numberOfSequencesArg;
+		numberOfTrials = numberOfTrialsArg;
+		a = aArg;
+		w = wArg;
+		sequenceOrder = sequenceOrderArg;
+		initArrays();
+	}
+
+	private void initArrays()
+	{
 		initSequences();
 		mt = new double[sequence.length];
 		pt = new double[sequence.length];
@@ -88,14 +107,43 @@ class FittsTaskTwoBlock
 		return sequenceOrder[idx];
 	}
 
+	// the A x W condition (idxA * w.length + idxW) for sequence i
+	public int getSequenceOrder(int i)
+	{
+		return sequenceOrder[i];
+	}
+
+	/**
+	 * Build the arrays on the given executor, which must run its tasks in order on one thread (the executor that
+	 * computes the sequence summary stats, so the stats are there). The getters that need the arrays wait for them.
+	 */
+	public void buildArrays(Executor worker)
+	{
+		arrays = new FutureTask<Void>(new Runnable()
+		{
+			public void run()
+			{
+				buildArrays();
+			}
+		}, null);
+		worker.execute(arrays);
+	}
+
+	// wait for the arrays, if they are built in the background
+	private void awaitArrays()
+	{
+		if (arrays != null)
+			FittsTaskTwoSequence.await(arrays);
+	}
+
 	public void buildArrays()
 	{
 		// these arrays hold the values for each sequence in the block
 		for (int i = 0; i < sequence.length; ++i)
 		{
 			mt[i] = sequence[i].getMT();
-			pt[i] = sequence[i].getMT() - sequence[i].getST();
-			st[i] = sequence[i].getST();
+			pt[i] = sequence[i].getST() < 0 ? Double.NaN : sequence[i].getMT() - sequence[i].getST(); // NaN = unknown
+			st[i] = sequence[i].getST() < 0 ? Double.NaN : sequence[i].getST();
 			er[i] = sequence[i].getER();
 			id[i] = sequence[i].getID();
 			ide[i] = sequence[i].getIDe();
@@ -103,6 +151,28 @@ class FittsTaskTwoBlock
 		}
 	}
 
+	// approximate heap size of the trace records kept for the trials in the block (bytes)
+	public long getTraceBytes()
+	{
+		long bytes = 0;
+		for (int i = 0; i < sequence.length; ++i)
+			for (int j = 0; j < sequence[i].getTrials(); ++j)
+				if (sequence[i].getTrial(j).getTrace() != null)
+					bytes += sequence[i].getTrial(j).getTrace().getBytes();
+		return bytes;
+	}
+
+	// number of trace samples kept for the trials in the block
+	public long getTraceSamples()
+	{
+		long samples = 0;
+		for (int i = 0; i < sequence.length; ++i)
+			for (int j = 0; j < sequence[i].getTrials(); ++j)
+				if (sequence[i].getTrial(j).getTrace() != null)
+					samples += sequence[i].getTrial(j).getTrace().size();
+		return samples;
+	}
+
 	public static String getBlockHeader()
 	{
 		return FittsTaskTwoSequence.getSequenceHeader(); // presentation
@@ -130,71 +200,85 @@ class FittsTaskTwoBlock
 
 	public double getMT()
 	{
+		awaitArrays();
 		return mean(mt);
 	}
 
 	public double getER()
 	{
+		awaitArrays();
 		return mean(er);
 	}
 
 	public double getID()
 	{
+		awaitArrays();
 		return mean(id);
 	}
 
 	public double getIDe()
 	{
+		awaitArrays();
 		return mean(ide);
 	}
 
 	public double getTP()
 	{
+		awaitArrays();
 		return mean(tp);
 	}
 
 	public double getIntercept()
 	{
+		awaitArrays();
 		return intercept(ide, mt);
 	}
 
 	public double getSlope()
 	{
+		awaitArrays();
 		return slope(ide, mt);
 	}
 
 	public double getCorrelation()
 	{
+		awaitArrays();
 		return corr(ide, mt);
 	}
 
 	public double getIntercept2()
 	{
+		awaitArrays();
 		return intercept(ide, pt);
 	}
 
 	public double getSlope2()
 	{
+		awaitArrays();
 		return slope(ide, pt);
 	}
 
 	public double getCorrelation2()
 	{
+		awaitArrays();
 		return corr(ide, pt);
 	}
 
 	public double getIntercept3()
 	{
+		awaitArrays();
 		return intercept(ide, st);
 	}
 
 	public double getSlope3()
 	{
+		awaitArrays();
 		return slope(ide, st);
 	}
 
 	public double getCorrelation3()
 	{
+		awaitArrays();
 		return corr(ide, st);
 	}
 
@@ -0,0 +1,79 @@
+import java.awt.event.InputEvent;
+
+// -------------------
+// F I T T S C L O C K
+// -------------------
+
+/*
+ * Time base for the event timestamps. All times are kept in nanoseconds.
+ *
+ * In the legacy (millisecond) mode, an event is stamped with InputEvent.getWhen(), so a 1000 Hz device can put several
+ * samples on the same timestamp. In the high-resolution mode, an event is stamped with System.nanoTime() when it is
+ * received. Times are written to the output files in ms: as integers in the legacy mode and with three decimals
+ * (i.e., to the microsecond) in the high-resolution mode.
+ *
+ * An engine has its own clock (see FittsTaskTwoEngine.getClock), and the trials and trace records it produces refer
+ * to it, so sessions with different time bases (e.g., in FittsTaskTwoReplay) can be processed in one JVM.
+ */
+class FittsTaskTwoClock
+{
+	private static final long NANOS_PER_MILLI = 1000000L;
+
+	private final boolean highResolution;
+
+	FittsTaskTwoClock(boolean highResolutionArg)
+	{
+		highResolution = highResolutionArg;
+	}
+
+	boolean isHighResolution()
+	{
+		return highResolution;
+	}
+
+	// timestamp for an input event (ns)
+	long eventTime(InputEvent e)
+	{
+		return highResolution ? System.nanoTime() : e.getWhen() * NANOS_PER_MILLI;
+	}
+
+	// current time (ns), on the same time base as eventTime
+	long now()
+	{
+		return highResolution ? System.nanoTime() : System.currentTimeMillis() * NANOS_PER_MILLI;
+	}
+
+	double toMillis(long ns)
+	{
+		return highResolution ? ns / (double)NANOS_PER_MILLI : ns / NANOS_PER_MILLI;
+	}
+
+	// append a time (ns) in ms, as written in the output files
+	StringBuilder appendMillis(StringBuilder sb, long ns)
+	{
+		if (!highResolution)
+			return sb.append(ns / NANOS_PER_MILLI);
+
+		long us = Math.round(ns / 1000.0);
+		if (us < 0)
+		{
+			sb.append('-');
+			us = -us;
+		}
+		long frac = us % 1000;
+		sb.append(us / 1000).append('.');
+		if (frac < 100)
+			sb.append('0');
+		if (frac < 10)
+			sb.append('0');
+		return sb.append(frac);
+	}
+
+	// format a time (ms), as written in the output files
+	String formatMillis(double ms)
+	{
+		if (!highResolution)
+			return Long.toString(Math.round(ms));
+		return appendMillis(new StringBuilder(), Math.round(ms * NANOS_PER_MILLI)).toString();
+	}
+}
@@ -0,0 +1,465 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <h1>FittsTaskTwoCollector</h1>
+ *
+ * <h3>Summary</h3>
+ *
+ * <ul>
+ * <li>Data collector for many FittsTaskTwo stations running at once. Each station streams its trial, trace, and
+ * sequence data to the collector as the session proceeds (see FittsTaskTwoNetworkSink, and the collector option in the
+ * configuration file).
+ * <p>
+ * <li>The data from all the stations go to one merged archive (sd1, sd2, and sd3 files), with the station name in the
+ * first column. As in a station's own files, the data for a sequence are written when the sequence is complete (and
+ * the traces of a sequence that is repeated are dropped).
+ * <p>
+ * <li>The throughput for each station is reported live: the running throughput for the sequence in progress (updated
+ * with each trial, and reported every few seconds) and the mean throughput of the sequences completed so far.
+ * <p>
+ * </ul>
+ *
+ * <h3>Running</h3>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoCollector [-p port] [-o archive] [-n blocks]
+ * </pre>
+ *
+ * where
+ * <p>
+ *
+ * <pre>
+ *      -p = port to listen on (default 5150)
+ *      -o = archive file name, without extension (default FittsTaskTwo-archive)
+ *      -n = stop after this many blocks are complete (default 0 = run until stopped)
+ * </pre>
+ *
+ * The collector and the stations can run on the same computer, e.g., for testing with the simulator:
+ * <p>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoCollector -n 2
+ *      PROMPT&gt;java FittsTaskTwoSimulator -c localhost:5150 -s 1
+ *      PROMPT&gt;java FittsTaskTwoSimulator -c localhost:5150 -s 2
+ * </pre>
+ *
+ * <h3>Implementation</h3>
+ *
+ * One thread does everything, with non-blocking NIO: a Selector accepts the connections and reads whatever data is
+ * available from each. Each connection has its own buffer, which holds a partial message until the rest arrives (and
+ * grows if a message is larger than the buffer). The archive files are written with group commit (FittsTaskTwoFileSink),
+ * so the disk sees a few large writes rather than one per message.
+ * <p>
+ *
+ * The stations are not trusted: a connection that sends a message that is not valid (a length out of range, a
+ * message before HELLO, an unknown version, a station name that is not valid, a line that cannot be parsed) is closed,
+ * and the other stations carry on.
+ * <p>
+ *
+ * A station is known by its name (the computer, with the participant, condition, and block codes). If a station
+ * connects with the name of a station that is still connected, it gets a number (name#2, ...), so the two do not share
+ * their state.
+ */
+public class FittsTaskTwoCollector
+{
+	private static final int BUFFER = 64 * 1024; // initial size of a connection's buffer
+	private static final int COMMIT_SIZE = 256 * 1024; // characters
+	private static final long COMMIT_INTERVAL = 1000; // ms
+	private static final long STATUS_INTERVAL = 5000; // ms between reports of the running throughput
+
+	private final Selector selector;
+	private final ServerSocketChannel server;
+	private final FittsTaskTwoDataSink sd1;
+	private final FittsTaskTwoDataSink sd2;
+	private final FittsTaskTwoDataSink sd3;
+	private final Map<String, Station> stations; // by name
+	private final StringBuilder sb;
+	private int blocks; // blocks complete
+	private long lastStatus;
+	private boolean changed; // trials since the last report
+
+	FittsTaskTwoCollector(int port, String archive) throws IOException
+	{
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress(port));
+		server.configureBlocking(false);
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		sd1 = new FittsTaskTwoFileSink(archive + ".sd1", COMMIT_SIZE, COMMIT_INTERVAL);
+		sd2 = new FittsTaskTwoFileSink(archive + ".sd2", COMMIT_SIZE, COMMIT_INTERVAL);
+		sd3 = new FittsTaskTwoFileSink(archive + ".sd3", COMMIT_SIZE, COMMIT_INTERVAL);
+		sd1.write("Station,App,Participant,Condition,Block,Trial," + FittsTaskTwoTrial.getTrialHeader() + "\n");
+		sd2.write("Station,App,Participant,Condition,Block," + FittsTaskTwoBlock.getBlockHeader() + "\n");
+		sd3.write("TRACE DATA\n");
+		sd3.write("Station,App,Participant,Condition,Block,Sequence,A,W,Trial,from_x,from_y,to_x,to_y,{t_x_y}\n");
+
+		stations = new TreeMap<String, Station>();
+		sb = new StringBuilder();
+		blocks = 0;
+		lastStatus = System.currentTimeMillis();
+	}
+
+	/**
+	 * Collect until the given number of blocks are complete (0 = forever).
+	 */
+	public void run(int maxBlocks) throws IOException
+	{
+		while (maxBlocks <= 0 || blocks < maxBlocks)
+		{
+			selector.select(COMMIT_INTERVAL);
+			Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+			while (it.hasNext())
+			{
+				SelectionKey key = it.next();
+				it.remove();
+				if (key.isAcceptable())
+					accept();
+				else if (key.isReadable())
+					read(key);
+			}
+
+			// commit the archive files when the stations are quiet, too
+			sd1.commit();
+			sd2.commit();
+			sd3.commit();
+
+			long now = System.currentTimeMillis();
+			if (changed && now - lastStatus >= STATUS_INTERVAL)
+			{
+				for (Station s : stations.values())
+					if (!s.complete && s.running.getTrials() > 1)
+						System.out.printf("%s: sequence %d, %d trials, TP = %.2f bits/s so far\n", s.name, s.sequence,
+								s.running.getTrials(), s.running.getTP());
+				lastStatus = now;
+				changed = false;
+			}
+		}
+		close();
+	}
+
+	private void accept() throws IOException
+	{
+		SocketChannel channel = server.accept();
+		if (channel == null)
+			return;
+		channel.configureBlocking(false);
+		channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+	}
+
+	// read what is available, and process the complete messages
+	private void read(SelectionKey key) throws IOException
+	{
+		Connection c = (Connection)key.attachment();
+		int n;
+		try
+		{
+			n = c.channel.read(c.in);
+		} catch (IOException e)
+		{
+			n = -1; // e.g., connection reset by the station
+		}
+
+		c.in.flip();
+		try
+		{
+			while (c.in.remaining() >= 4)
+			{
+				int length = c.in.getInt(c.in.position());
+				if (length < FittsTaskTwoNetworkSink.MIN_MESSAGE || length > FittsTaskTwoNetworkSink.MAX_MESSAGE)
+					throw new ProtocolException("Bad message length: " + length);
+				if (c.in.remaining() < 4 + length)
+					break;
+				c.in.getInt();
+				byte type = c.in.get();
+				int a = c.in.getInt();
+				int b = c.in.getInt();
+				int textLength = length - FittsTaskTwoNetworkSink.MIN_MESSAGE;
+				String text = new String(c.in.array(), c.in.arrayOffset() + c.in.position(), textLength,
+						StandardCharsets.UTF_8);
+				c.in.position(c.in.position() + textLength);
+				process(c, type, a, b, text);
+			}
+		} catch (ProtocolException e)
+		{
+			drop(key, c, e.getMessage());
+			return;
+		}
+		c.in.compact();
+
+		// make room for a message larger than the buffer
+		if (c.in.position() >= 4)
+		{
+			int length = c.in.getInt(0);
+			if (4 + length > c.in.capacity())
+			{
+				ByteBuffer bigger = ByteBuffer.allocate(4 + length);
+				c.in.flip();
+				bigger.put(c.in);
+				c.in = bigger;
+			}
+		}
+
+		if (n < 0)
+		{
+			key.cancel();
+			c.channel.close();
+			if (c.station != null)
+			{
+				c.station.connected = false;
+				if (!c.station.complete)
+					System.out.println(c.station.name + ": disconnected before the end of the block");
+			}
+		}
+	}
+
+	// close a connection that broke the protocol (only that connection)
+	private void drop(SelectionKey key, Connection c, String reason) throws IOException
+	{
+		key.cancel();
+		String name = c.station != null ? c.station.name : String.valueOf(c.channel.getRemoteAddress());
+		if (c.station != null)
+			c.station.connected = false;
+		c.channel.close();
+		System.out.println(name + ": " + reason + ", connection closed");
+	}
+
+	private void process(Connection c, byte type, int a, int b, String text) throws IOException
+	{
+		if (type == FittsTaskTwoNetworkSink.HELLO)
+		{
+			if (a != FittsTaskTwoNetworkSink.VERSION)
+				throw new ProtocolException("Unsupported station version: " + a);
+			if (c.station != null)
+				throw new ProtocolException("Second HELLO");
+			if (text.isEmpty() || text.indexOf(',') >= 0 || text.indexOf('\n') >= 0)
+				throw new ProtocolException("Station name not valid");
+			// a name that is in use by another connection gets a number (each station has its own state)
+			String name = text;
+			for (int i = 2; stations.containsKey(name) && stations.get(name).connected; ++i)
+				name = text + "#" + i;
+			c.station = stations.get(name);
+			if (c.station == null)
+			{
+				c.station = new Station(name);
+				stations.put(name, c.station);
+			}
+			c.station.startBlock();
+			c.station.connected = true;
+			System.out.println(c.station.name + ": connected");
+			return;
+		}
+		if (c.station == null)
+			throw new ProtocolException("Message before HELLO");
+
+		Station s = c.station;
+		if (type == FittsTaskTwoNetworkSink.TRIAL)
+		{
+			s.trial(a, b, text);
+			changed = true;
+		} else if (type == FittsTaskTwoNetworkSink.TRACE)
+			appendLines(s.getTraces(a), s.name, text, 0); // held until the sequence is complete
+		else if (type == FittsTaskTwoNetworkSink.REPEAT)
+			s.getTraces(a).setLength(0);
+		else if (type == FittsTaskTwoNetworkSink.SEQUENCE)
+		{
+			// the sd2 line, then the sd1 lines (the sd2 line is checked before anything is written)
+			int end = text.indexOf('\n');
+			if (end < 0)
+				throw new ProtocolException("No sd2 line for sequence " + a);
+			s.sequence(text.substring(0, end));
+			sb.setLength(0);
+			sb.append(s.name).append(',').append(text, 0, end + 1);
+			sd2.write(sb);
+			sb.setLength(0);
+			appendLines(sb, s.name, text, end + 1);
+			sd1.write(sb);
+			sd3.write(s.getTraces(a));
+			s.traces.remove(a);
+			System.out.printf("%s: sequence %d, TP = %.2f bits/s (mean %.2f bits/s, %d sequences)\n", s.name, a,
+					s.lastTP, s.getMeanTP(), s.sequences);
+		} else if (type == FittsTaskTwoNetworkSink.END)
+		{
+			s.complete = true;
+			++blocks;
+			System.out.printf("%s: block complete, mean TP = %.2f bits/s (%d sequences, %d trials)\n", s.name,
+					s.getMeanTP(), s.sequences, s.trials);
+		}
+	}
+
+	// append the lines of text (from position start), each with the station in front
+	private static void appendLines(StringBuilder sb, String station, String text, int start)
+	{
+		for (int end = text.indexOf('\n', start); end >= 0; end = text.indexOf('\n', start))
+		{
+			sb.append(station).append(',').append(text, start, end + 1);
+			start = end + 1;
+		}
+	}
+
+	private void close() throws IOException
+	{
+		for (SelectionKey key : selector.keys())
+			key.channel().close();
+		selector.close();
+		sd1.close();
+		sd2.close();
+		sd3.close();
+	}
+
+	// -----------------------------------------------------------------------------------------
+
+	// a connection from a station
+	private static class Connection
+	{
+		SocketChannel channel;
+		ByteBuffer in; // partial messages
+		Station station; // set by the HELLO message
+
+		Connection(SocketChannel channelArg)
+		{
+			channel = channelArg;
+			in = ByteBuffer.allocate(BUFFER);
+		}
+	}
+
+	// the live throughput for a station
+	private static class Station
+	{
+		// columns of an sd1 line (App,Participant,Condition,Block,Trial,A,W,Ae,dx,PT,ST,MT,...) and an sd2 line
+		private static final int SD1_AE = 7;
+		private static final int SD1_DX = 8;
+		private static final int SD1_MT = 11;
+		private static final int SD2_TP = 16; // App,Participant,Condition,Block,SRC,...,ER,TP
+
+		String name;
+		Map<Integer, StringBuilder> traces; // sd3 lines by sequence, until the sequence is complete
+		FittsTaskTwoRunningStats running; // the sequence in progress
+		int sequence; // the sequence in progress
+		int sequences; // sequences complete (this block)
+		long trials;
+		double tpSum;
+		double lastTP;
+		boolean complete;
+		boolean connected; // to a connection that is open
+
+		Station(String nameArg)
+		{
+			name = nameArg;
+			traces = new HashMap<Integer, StringBuilder>();
+			running = new FittsTaskTwoRunningStats();
+			startBlock();
+		}
+
+		void startBlock()
+		{
+			traces.clear();
+			running.clear();
+			sequence = 0;
+			sequences = 0;
+			trials = 0;
+			tpSum = 0.0;
+			complete = false;
+		}
+
+		StringBuilder getTraces(int sequenceArg)
+		{
+			StringBuilder sb = traces.get(sequenceArg);
+			if (sb == null)
+			{
+				sb = new StringBuilder();
+				traces.put(sequenceArg, sb);
+			}
+			return sb;
+		}
+
+		void trial(int sequenceArg, int trial, String sd1Line) throws ProtocolException
+		{
+			// a new sequence (or the same one again, if it was repeated) starts with trial 1
+			if (sequenceArg != sequence || trial == 1)
+				running.clear();
+			sequence = sequenceArg;
+			String[] column = sd1Line.trim().split(",");
+			running.add(parse(column, SD1_AE), parse(column, SD1_DX), parse(column, SD1_MT));
+			++trials;
+		}
+
+		void sequence(String sd2Line) throws ProtocolException
+		{
+			lastTP = parse(sd2Line.split(","), SD2_TP);
+			tpSum += lastTP;
+			++sequences;
+		}
+
+		// column i of a line, as a number
+		private static double parse(String[] column, int i) throws ProtocolException
+		{
+			try
+			{
+				if (i < column.length)
+					return Double.parseDouble(column[i]);
+			} catch (NumberFormatException e)
+			{
+			}
+			throw new ProtocolException("Bad data line: " + String.join(",", column));
+		}
+
+		double getMeanTP()
+		{
+			return sequences > 0 ? tpSum / sequences : Double.NaN;
+		}
+	}
+
+	// -----------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException
+	{
+		int port = FittsTaskTwoNetworkSink.DEFAULT_PORT;
+		String archive = "FittsTaskTwo-archive";
+		int maxBlocks = 0;
+
+		try
+		{
+			for (int i = 0; i < args.length; ++i)
+			{
+				if (args[i].equals("-p") && i + 1 < args.length)
+					port = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-o") && i + 1 < args.length)
+					archive = args[++i];
+				else if (args[i].equals("-n") && i + 1 < args.length)
+					maxBlocks = Integer.parseInt(args[++i]);
+				else
+					usage();
+			}
+		} catch (NumberFormatException e)
+		{
+			usage();
+		}
+
+		FittsTaskTwoCollector collector = new FittsTaskTwoCollector(port, archive);
+		System.out.println("Collecting on port " + port + " to " + archive + ".sd1, .sd2, .sd3");
+		collector.run(maxBlocks);
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: java FittsTaskTwoCollector [-p port] [-o archive] [-n blocks]");
+		System.out.println();
+		System.out.println("   where -p = port to listen on (default 5150)");
+		System.out.println("         -o = archive file name, without extension (default FittsTaskTwo-archive)");
+		System.out.println("         -n = stop after this many blocks are complete (default 0 = run until stopped)");
+		System.exit(0);
+	}
+}
@@ -13,6 +13,24 @@ class FittsTaskTwoConfiguration
 	Color backgroundColor, foregroundColor, targetColor, buttonDownColor, mouseOverColor;
 	double hysteresis;
 
+	// optional arguments (as "name = value" lines after the colours in the configuration file)
+	int commitSize; // sink commit threshold (characters, 0 = commit at end of sequence only)
+	long commitInterval; // sink commit threshold (ms, 0 = commit at end of sequence only)
+	boolean highResolutionClock; // stamp events with System.nanoTime (instead of MouseEvent.getWhen)
+	int sampleRate; // Hz, poll the pointer at this rate for the trace (0 = use mouse events)
+	boolean activeRendering; // draw the targets in a full-screen exclusive window with a BufferStrategy
+	boolean rawMotion; // trace every motion event as posted, before the event queue coalesces it
+	boolean gcRepeat; // repeat a sequence if a garbage collection pause overlapped one of its trials
+	boolean warmUp; // warm up the JIT compiler with simulated trials before the first sequence
+	boolean journal; // keep a journal of the session (to resume after a crash)
+	long journalSync; // ms between syncs of the journal to disk (0 = after every trial)
+	boolean hud; // show the running Ae, We, IDe, MT, and TP for the sequence in the task panel
+	String collector; // host:port of a FittsTaskTwoCollector to stream the results to ("none" = not used)
+	String logLevel; // level of the diagnostic log (error, warn, info, debug)
+	double gapThreshold; // interval between trace samples that counts as a gap (ms)
+	int decimateDistance; // pointer moves closer than this (pixels) to the last sample kept may be dropped
+	double decimateInterval; // ... and sooner than this (ms)
+
 	FittsTaskTwoConfiguration(String participantCodeArg, String conditionCodeArg, String blockCodeArg, int numberOfTargetsArg, int[] aArg, int[] wArg,
 			boolean randomizeArg, boolean beepOnErrorArg, boolean buttonDownHighlightArg,
 			boolean mouseOverHighlightArg, int errorThresholdArg, double hysteresisArg, Color backgroundColorArg,
@@ -35,6 +53,66 @@ class FittsTaskTwoConfiguration
 		targetColor = targetColorArg;
 		buttonDownColor = buttonDownColorArg;
 		mouseOverColor = mouseOverColorArg;
+
+		// defaults for the optional arguments
+		commitSize = 0;
+		commitInterval = 0;
+		highResolutionClock = false;
+		sampleRate = 0;
+		activeRendering = false;
+		rawMotion = false;
+		gcRepeat = false;
+		warmUp = true;
+		journal = true;
+		journalSync = 1000;
+		hud = false;
+		collector = "none";
+		logLevel = "info";
+		gapThreshold = 20.0;
+		decimateDistance = 0;
+		decimateInterval = 0.0;
+	}
+
+	/**
+	 * Set an optional argument by name. Returns false if the name is not an optional argument.
+	 */
+	public boolean setOption(String name, String value)
+	{
+		if (name.equals("commitSize"))
+			setCommitSize(Integer.parseInt(value));
+		else if (name.equals("commitInterval"))
+			setCommitInterval(Long.parseLong(value));
+		else if (name.equals("highResolutionClock"))
+			setHighResolutionClock(value.equals("yes"));
+		else if (name.equals("sampleRate"))
+			setSampleRate(Integer.parseInt(value));
+		else if (name.equals("activeRendering"))
+			setActiveRendering(value.equals("yes"));
+		else if (name.equals("rawMotion"))
+			setRawMotion(value.equals("yes"));
+		else if (name.equals("gcRepeat"))
+			setGcRepeat(value.equals("yes"));
+		else if (name.equals("warmUp"))
+			setWarmUp(value.equals("yes"));
+		else if (name.equals("journal"))
+			setJournal(value.equals("yes"));
+		else if (name.equals("journalSync"))
+			setJournalSync(Long.parseLong(value));
+		else if (name.equals("hud"))
+			setHud(value.equals("yes"));
+		else if (name.equals("collector"))
+			setCollector(value);
+		else if (name.equals("logLevel"))
+			setLogLevel(value);
+		else if (name.equals("gapThreshold"))
+			setGapThreshold(Double.parseDouble(value));
+		else if (name.equals("decimateDistance"))
+			setDecimateDistance(Integer.parseInt(value));
+		else if (name.equals("decimateInterval"))
+			setDecimateInterval(Double.parseDouble(value));
+		else
+			return false;
+		return true;
 	}
 	
 	public void setFilename(String filenameArg)
@@ -126,6 +204,86 @@ class FittsTaskTwoConfiguration
 	{
 		mouseOverColor = c;
 	}
+
+	public void setCommitSize(int n)
+	{
+		commitSize = n;
+	}
+
+	public void setCommitInterval(long n)
+	{
+		commitInterval = n;
+	}
+
+	public void setHighResolutionClock(boolean b)
+	{
+		highResolutionClock = b;
+	}
+
+	public void setSampleRate(int n)
+	{
+		sampleRate = n;
+	}
+
+	public void setActiveRendering(boolean b)
+	{
+		activeRendering = b;
+	}
+
+	public void setRawMotion(boolean b)
+	{
+		rawMotion = b;
+	}
+
+	public void setGcRepeat(boolean b)
+	{
+		gcRepeat = b;
+	}
+
+	public void setWarmUp(boolean b)
+	{
+		warmUp = b;
+	}
+
+	public void setJournal(boolean b)
+	{
+		journal = b;
+	}
+
+	public void setJournalSync(long n)
+	{
+		journalSync = n;
+	}
+
+	public void setHud(boolean b)
+	{
+		hud = b;
+	}
+
+	public void setCollector(String s)
+	{
+		collector = s;
+	}
+
+	public void setLogLevel(String s)
+	{
+		logLevel = s;
+	}
+
+	public void setGapThreshold(double d)
+	{
+		gapThreshold = d;
+	}
+
+	public void setDecimateDistance(int n)
+	{
+		decimateDistance = n;
+	}
+
+	public void setDecimateInterval(double d)
+	{
+		decimateInterval = d;
+	}
 	
 	public String getFilename()
 	{
@@ -217,6 +375,86 @@ class FittsTaskTwoConfiguration
 		return mouseOverColor;
 	}
 
+	public int getCommitSize()
+	{
+		return commitSize;
+	}
+
+	public long getCommitInterval()
+	{
+		return commitInterval;
+	}
+
+	public boolean getHighResolutionClock()
+	{
+		return highResolutionClock;
+	}
+
+	public int getSampleRate()
+	{
+		return sampleRate;
+	}
+
+	public boolean getActiveRendering()
+	{
+		return activeRendering;
+	}
+
+	public boolean getRawMotion()
+	{
+		return rawMotion;
+	}
+
+	public boolean getGcRepeat()
+	{
+		return gcRepeat;
+	}
+
+	public boolean getWarmUp()
+	{
+		return warmUp;
+	}
+
+	public boolean getJournal()
+	{
+		return journal;
+	}
+
+	public long getJournalSync()
+	{
+		return journalSync;
+	}
+
+	public boolean getHud()
+	{
+		return hud;
+	}
+
+	public String getCollector()
+	{
+		return collector;
+	}
+
+	public String getLogLevel()
+	{
+		return logLevel;
+	}
+
+	public double getGapThreshold()
+	{
+		return gapThreshold;
+	}
+
+	public int getDecimateDistance()
+	{
+		return decimateDistance;
+	}
+
+	public double getDecimateInterval()
+	{
+		return decimateInterval;
+	}
+
 	public String getAString()
 	{
 		String s = "";
@@ -377,6 +615,91 @@ class FittsTaskTwoConfiguration
 		sb.append("# MOUSE-OVER R G B COLOR\n"); 
 		sb.append(getColorString(getMouseOverColor()) + "\n");
 		sb.append("\n");
+		sb.append("# -----\n");
+		sb.append("# OPTIONAL ARGUMENTS (name = value, one per line, any order)\n");
+		sb.append("#\n");
+		sb.append("# These may be omitted. If so, the default value is used.\n");
+		sb.append("#\n");
+		sb.append("# commitSize, commitInterval: The sd1, sd2, and sd3 records are written to disk\n");
+		sb.append("# together at the end of each sequence. A non-zero commitSize (characters) or\n");
+		sb.append("# commitInterval (ms) also writes them once this much data is pending or this much\n");
+		sb.append("# time has passed (default: 0, 0).\n");
+		sb.append("commitSize = " + getCommitSize() + "\n");
+		sb.append("commitInterval = " + getCommitInterval() + "\n");
+		sb.append("#\n");
+		sb.append("# highResolutionClock (yes,no): If \"yes\", each event is timestamped with\n");
+		sb.append("# System.nanoTime when it is received, and times are written with microsecond\n");
+		sb.append("# resolution. If \"no\", the event's own millisecond timestamp is used (default: no).\n");
+		sb.append("highResolutionClock = " + (getHighResolutionClock() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# sampleRate (Hz): If non-zero, the trace data are gathered by polling the pointer\n");
+		sb.append("# position at this rate on a background thread, instead of from the mouse events\n");
+		sb.append("# (which are coalesced when the system is busy). Use with highResolutionClock = yes\n");
+		sb.append("# for rates above 100 Hz. Samples lost because the buffer was full are counted in\n");
+		sb.append("# the Dropped column of the sd1 file (default: 0).\n");
+		sb.append("sampleRate = " + getSampleRate() + "\n");
+		sb.append("#\n");
+		sb.append("# activeRendering (yes,no): If \"yes\", the task runs in a full-screen exclusive window\n");
+		sb.append("# and each new target is drawn and shown immediately (active rendering), instead of\n");
+		sb.append("# when Swing gets around to repainting the window (default: no).\n");
+		sb.append("activeRendering = " + (getActiveRendering() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# rawMotion (yes,no): If \"yes\", every mouse motion event goes in the trace as it\n");
+		sb.append("# is posted, before the event queue can merge (coalesce) it with the next one. Not\n");
+		sb.append("# used if sampleRate is non-zero (default: no).\n");
+		sb.append("rawMotion = " + (getRawMotion() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# gcRepeat (yes,no): If \"yes\", a sequence is repeated if a garbage collection pause\n");
+		sb.append("# occurred during any of its trials. The pauses are written to the sd1 file either\n");
+		sb.append("# way (default: no).\n");
+		sb.append("gcRepeat = " + (getGcRepeat() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# warmUp (yes,no): If \"yes\", a simulated participant does the task (with no display\n");
+		sb.append("# and no output files) until the JIT compiler has compiled the code used for each\n");
+		sb.append("# event, before the first sequence. This takes a few seconds (default: yes).\n");
+		sb.append("warmUp = " + (getWarmUp() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# journal (yes,no): If \"yes\", each trial is also written to a binary journal file\n");
+		sb.append("# (jnl) as soon as it is complete. If the application (or the computer) crashes, the\n");
+		sb.append("# session can be resumed from the journal: restart with the same participant,\n");
+		sb.append("# condition, and block codes (default: yes).\n");
+		sb.append("journal = " + (getJournal() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# journalSync (ms): The journal is synced to disk (i.e., survives a power loss) at the\n");
+		sb.append("# end of each sequence, and at most this often during a sequence (0 = after every\n");
+		sb.append("# trial). A crash of the application loses nothing either way (default: 1000).\n");
+		sb.append("journalSync = " + getJournalSync() + "\n");
+		sb.append("#\n");
+		sb.append("# hud (yes,no): If \"yes\", the running Ae, We, IDe, MT, and TP for the sequence so far\n");
+		sb.append("# are shown in the top-right corner of the task panel, updated after every trial\n");
+		sb.append("# (default: no).\n");
+		sb.append("hud = " + (getHud() ? "yes" : "no") + "\n");
+		sb.append("#\n");
+		sb.append("# collector (host:port, or none): Also stream the trial, trace, and sequence data to a\n");
+		sb.append("# FittsTaskTwoCollector at this address (e.g., localhost:5150). The data files are\n");
+		sb.append("# written as usual (default: none).\n");
+		sb.append("collector = " + getCollector() + "\n");
+		sb.append("#\n");
+		sb.append("# logLevel (error,warn,info,debug): Level of the diagnostic log, which is kept in memory\n");
+		sb.append("# and written to a .log file (named as the data files) on Ctrl+Shift+L, or if the\n");
+		sb.append("# application fails. \"debug\" includes the layout of each sequence (default: info).\n");
+		sb.append("logLevel = " + getLogLevel() + "\n");
+		sb.append("#\n");
+		sb.append("# gapThreshold (ms): An interval between two trace samples longer than this is counted\n");
+		sb.append("# as a gap (e.g., dropped samples), in the Gaps column of the sd1 and sd2 files. The\n");
+		sb.append("# sample rate and the intervals are also written. The mouse sends no samples while it is\n");
+		sb.append("# still, so a pause in the movement (e.g., the button press) is a gap too (default: 20).\n");
+		sb.append("gapThreshold = " + getGapThreshold() + "\n");
+		sb.append("#\n");
+		sb.append("# decimateDistance (pixels), decimateInterval (ms): A pointer move is not kept in the\n");
+		sb.append("# trace if it is less than decimateDistance pixels from the last sample kept and less\n");
+		sb.append("# than decimateInterval ms after it (e.g., the pointer at rest during the selection).\n");
+		sb.append("# The first sample of a trial and the button press and release are always kept. The\n");
+		sb.append("# Raw and Kept columns of the sd1 file give the samples captured and kept. MDC and ODC\n");
+		sb.append("# count fewer of the small (jitter) direction changes (0 = keep every sample; default: 0).\n");
+		sb.append("decimateDistance = " + getDecimateDistance() + "\n");
+		sb.append("decimateInterval = " + getDecimateInterval() + "\n");
+		sb.append("\n");
 		sb.append("# --- end ---\n");
 		return sb.toString();
 	}
@@ -0,0 +1,46 @@
+import java.io.IOException;
+
+// ---------------------------------
+// F I T T S C O U N T I N G S I N K
+// ---------------------------------
+
+/*
+ * A data sink that discards the records but counts them, for running the task without writing files (see
+ * FittsTaskTwoSimulator).
+ */
+class FittsTaskTwoCountingSink implements FittsTaskTwoDataSink
+{
+	private long characters;
+	private long writes;
+	private long commits;
+
+	public void write(CharSequence record)
+	{
+		characters += record.length();
+		++writes;
+	}
+
+	public void commit()
+	{
+		++commits;
+	}
+
+	public void close() throws IOException
+	{
+	}
+
+	public long getCharacters()
+	{
+		return characters;
+	}
+
+	public long getWrites()
+	{
+		return writes;
+	}
+
+	public long getCommits()
+	{
+		return commits;
+	}
+}
@@ -0,0 +1,19 @@
+import java.io.IOException;
+
+// -------------------------
+// F I T T S D A T A S I N K
+// -------------------------
+
+/*
+ * Destination for the records of an output data file (sd1, sd2, or sd3). Records are written as they are produced but
+ * a sink is free to hold them until commit(), so the records of a sequence can go out together. close() commits
+ * anything pending and releases the sink.
+ */
+interface FittsTaskTwoDataSink
+{
+	void write(CharSequence record) throws IOException;
+
+	void commit() throws IOException;
+
+	void close() throws IOException;
+}
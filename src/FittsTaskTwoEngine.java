@@ -0,0 +1,459 @@
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.Executor;
+
+// ---------------------
+// F I T T S E N G I N E
+// ---------------------
+
+/*
+ * The trial, sequence, and block logic for FittsTaskTwo, with no dependence on a display. The engine consumes a
+ * stream of input events (time, x, y, and the button state) and emits the trial, sequence, and block results to its
+ * listeners. FittsTaskTwoFrame feeds it mouse events and renders the targets; the engine can just as well be fed
+ * synthetic events, e.g., for testing or benchmarking.
+ *
+ * Times are in ns, on the engine's clock (see FittsTaskTwoClock). Coordinates are in the task panel's coordinate
+ * system. Processing a move event does not allocate.
+ */
+class FittsTaskTwoEngine
+{
+	private int numberOfTargets; // number of trials per target condition
+	private int[] a; // target amplitude conditions
+	private int[] w; // target width conditions
+	private double errorThreshold; // error rate threshold (%)
+
+	private FittsTaskTwoBlock block;
+	private FittsTaskTwoPlan plan; // the layouts for all the sequences in the block
+	private FittsTaskTwoLayout layout; // the layout for the current sequence
+	private FittsTaskTwoTrace trace; // trace samples for the current trial
+	private ArrayList<FittsTaskTwoEngineListener> listeners;
+	private final FittsTaskTwoClock clock; // the time base of the events
+
+	private int activeTarget;
+	private int trial;
+	private boolean inTarget;
+	private boolean finished;
+	private boolean motionSamples; // add a trace sample for each move event
+	private boolean pressUnknown; // the time of the last press is not known (see pressUnknown)
+	private long movementTime;
+	private long buttonDown; // button down time
+	private long buttonUp; // button up time
+	private long tOld;
+	private long start;
+	private long onset; // target onset latency for the trial in progress (-1 = the target is not shown yet)
+	private long coalesced; // motion events coalesced by the event queue, so far
+	private long coalescedAtStart; // ... at the start of the trial in progress
+	private long dropped; // samples dropped by the sample ring (full), so far
+	private long droppedAtStart; // ... at the start of the trial in progress
+	private long[] trialStart; // start and end times of the trials in the sequence (for the GC pauses)
+	private long[] trialEnd;
+	private FittsTaskTwoGcMonitor gcMonitor; // null if not used
+	private boolean gcRepeat; // repeat a sequence with a GC pause
+	private boolean gcRepeated; // the last sequence was repeated because of a GC pause
+	private Executor worker; // computes the sequence summary stats (null = in release)
+
+	FittsTaskTwoEngine(FittsTaskTwoConfiguration c, FittsTaskTwoClock clockArg)
+	{
+		this(c, new FittsTaskTwoBlock(c.getA().length * c.getW().length, c.getNumberOfTargets(), c.getA(), c.getW(),
+				c.getRandomize()), clockArg);
+	}
+
+	/**
+	 * An engine for the given block, which begins at the block's current sequence (e.g., a block rebuilt from a
+	 * journal, to resume a session).
+	 */
+	FittsTaskTwoEngine(FittsTaskTwoConfiguration c, FittsTaskTwoBlock blockArg, FittsTaskTwoClock clockArg)
+	{
+		clock = clockArg;
+		numberOfTargets = c.getNumberOfTargets();
+		a = c.getA();
+		w = c.getW();
+		errorThreshold = c.getErrorThreshold();
+
+		block = blockArg;
+		plan = new FittsTaskTwoPlan(numberOfTargets, c.getHysteresis(), a, w, block);
+		plan.configure(0, 0); // until the size of the panel is known
+
+		// reused for every trial (grows if a trial has more samples than it can hold)
+		trace = new FittsTaskTwoTrace();
+		trace.setGapThreshold(Math.round(c.getGapThreshold() * 1e6));
+		trace.setDecimation(c.getDecimateDistance(), Math.round(c.getDecimateInterval() * 1e6));
+		listeners = new ArrayList<FittsTaskTwoEngineListener>();
+		trialStart = new long[numberOfTargets];
+		trialEnd = new long[numberOfTargets];
+		motionSamples = true;
+		trial = 0;
+		inTarget = false;
+		finished = false;
+		onset = -1;
+		configureSequence();
+	}
+
+	public void addListener(FittsTaskTwoEngineListener l)
+	{
+		listeners.add(l);
+	}
+
+	// the time base of the events (and of the times in the trials and trace records)
+	public FittsTaskTwoClock getClock()
+	{
+		return clock;
+	}
+
+	/**
+	 * Annotate the trials with the garbage collection pauses that overlapped them (and, if repeat is true, repeat
+	 * any sequence with a pause). The monitor must be on the engine's clock.
+	 */
+	public void setGcMonitor(FittsTaskTwoGcMonitor m, boolean repeat)
+	{
+		gcMonitor = m;
+		gcRepeat = repeat;
+	}
+
+	/**
+	 * Compute the summary stats (and the accuracy measures of the trials) for each completed sequence on the given
+	 * executor (one thread, see FittsTaskTwoSequence.computeSequenceSummaryStats), so the listeners are told the
+	 * sequence is complete without waiting for them.
+	 */
+	public void setWorker(Executor w)
+	{
+		worker = w;
+	}
+
+	// the number of motion events coalesced so far by the event queue (call before release, see FittsTaskTwoEventQueue)
+	public void setCoalesced(long n)
+	{
+		coalesced = n;
+	}
+
+	// the number of samples dropped so far by the sample ring (call before release, see FittsTaskTwoSampleRing)
+	public void setDropped(long n)
+	{
+		dropped = n;
+	}
+
+	// if false, move events do not add trace samples (they come from elsewhere, see drain)
+	public void setMotionSamples(boolean b)
+	{
+		motionSamples = b;
+	}
+
+	/**
+	 * Set the size of the task panel (the targets are centred in the panel).
+	 */
+	public void setSize(int width, int height)
+	{
+		plan.configure(width, height);
+		configureSequence();
+	}
+
+	/**
+	 * Start the block. This lets the listeners know the first sequence is ready.
+	 */
+	public void start() throws IOException
+	{
+		for (FittsTaskTwoEngineListener l : listeners)
+			l.sequenceStarted(this);
+	}
+
+	// -----------
+	// input events
+	// -----------
+
+	// the pointer moved (with or without the button down)
+	public void move(long t, int x, int y)
+	{
+		updateInTarget(x, y);
+		if (trial > 0 && motionSamples)
+			trace.addMove(t - buttonUp, x, y);
+	}
+
+	// the button was pressed
+	public void press(long t, int x, int y)
+	{
+		pressUnknown = false;
+		buttonDown = t;
+		updateInTarget(x, y);
+		if (trial > 0)
+			trace.add(buttonDown - buttonUp, x, y);
+	}
+
+	/**
+	 * As press, but the time of the press is not known (e.g., a trace replayed without its sd1 file), so the trial's PT
+	 * and ST are -1 (unknown). The sample is added as for a press.
+	 */
+	public void pressUnknown(long t, int x, int y)
+	{
+		press(t, x, y);
+		pressUnknown = true;
+	}
+
+	/**
+	 * Move the pointer samples up to time 'until' from the sample ring to the trace (x,y relative to xOffset,yOffset).
+	 * Before the first click of a sequence, the samples are discarded.
+	 */
+	public void drain(FittsTaskTwoSampleRing ring, long until, int xOffset, int yOffset)
+	{
+		if (trial > 0)
+			ring.drain(until, trace, buttonUp, xOffset, yOffset);
+		else
+			ring.drain(until, null, 0, 0, 0);
+	}
+
+	/**
+	 * The display shows the active target as of time t. The first call after the target changes gives the target
+	 * onset latency for the trial (the time from the start of the trial until the target was actually shown).
+	 */
+	public void presented(long t)
+	{
+		if (onset < 0 && trial > 0)
+			onset = t - buttonUp;
+	}
+
+	// the button was released (a selection)
+	public void release(long when, int x, int y) throws IOException
+	{
+		if (finished)
+			return;
+
+		updateInTarget(x, y);
+
+		// do not allow a sequence to begin unless the first selection is inside the start target
+		if (trial == 0 && !inTarget)
+			return;
+
+		// at beginning of 1st trial, set buttonUp now
+		if (trial == 0)
+			buttonUp = when;
+
+		// last trace sample (will be overwritten for first sample of first trial)
+		trace.add(when - buttonUp, x, y); // old button up
+
+		if (trial > 0)
+		{
+			trialStart[trial - 1] = buttonUp;
+			trialEnd[trial - 1] = when;
+		}
+
+		buttonUp = when; // new button up
+
+		if (trial == 0) // beginning of a sequence of n trials
+		{
+			start = buttonUp;
+			coalescedAtStart = coalesced;
+			droppedAtStart = dropped;
+			trace.clear();
+		}
+		tOld = movementTime;
+		movementTime = buttonUp - start;
+
+		if (trial > 0) // process trial (first click doesn't count)
+		{
+			FittsTaskTwoTrial t = block.getSequence(block.getIDX()).getTrial(trial - 1);
+			t.setXFrom(layout.getFromX(trial));
+			t.setYFrom(layout.getFromY(trial));
+			t.setXTo(layout.getToX(trial));
+			t.setYTo(layout.getToY(trial));
+			t.setXSelect(trace.getX(trace.size() - 1));
+			t.setYSelect(trace.getY(trace.size() - 1));
+
+			// set the Ae and deltaX for the trial (let the Throughput class do the work)
+			t.setAe(Throughput.getTrialAe(new Point2D.Double(t.xFrom, t.yFrom), new Point2D.Double(t.xTo, t.yTo),
+					new Point2D.Double(t.xSelect, t.ySelect)));
+			t.setDx(Throughput.getTrialDeltaX(new Point2D.Double(t.xFrom, t.yFrom), new Point2D.Double(t.xTo, t.yTo),
+					new Point2D.Double(t.xSelect, t.ySelect)));
+
+			t.setPt(pressUnknown ? -1 : clock.toMillis(movementTime - tOld - (buttonUp - buttonDown)));
+			t.setSt(pressUnknown ? -1 : clock.toMillis(buttonUp - buttonDown));
+			t.setMt(clock.toMillis(movementTime - tOld));
+			t.setErr(inTarget ? 0 : 1);
+			t.setOnset(onset < 0 ? -1 : clock.toMillis(onset));
+			t.setCoalesced((int)(coalesced - coalescedAtStart));
+			coalescedAtStart = coalesced;
+			t.setDropped((int)(dropped - droppedAtStart));
+			droppedAtStart = dropped;
+			t.setSampling(trace); // audited as the samples were added
+
+			// trace-related data for sd3 file (store in Trial object)
+			FittsTaskTwoTraceRecord r = new FittsTaskTwoTraceRecord(getSequenceNumber(), trial, t, trace, clock);
+			t.setTrace(r);
+			for (FittsTaskTwoEngineListener l : listeners)
+				l.trialComplete(this, t, r);
+
+			// 1st sample of next trial begins at same x,y but with t = 0
+			trace.clear(); // start again
+			trace.add(0, x, y);
+		}
+
+		// prepare for next trial
+
+		if (trial < numberOfTargets) // not end of sequence
+		{
+			activeTarget = layout.getTargetOrder(trial + 1);
+			++trial;
+			onset = -1;
+			for (FittsTaskTwoEngineListener l : listeners)
+				l.targetAdvanced(this);
+			return;
+		}
+
+		// end of sequence, see if it needs to be repeated
+		FittsTaskTwoSequence s = block.getSequence(block.getIDX());
+		boolean paused = setGcPauses(s);
+		double er = s.getErrorRate(); // the summary stats are not needed for this
+		gcRepeated = er <= errorThreshold && paused && gcRepeat;
+		if (er > errorThreshold || gcRepeated) // sequence must be repeated
+		{
+			s.incrementSequenceRepeatCount();
+			for (FittsTaskTwoEngineListener l : listeners)
+				l.sequenceRepeated(this, s);
+			startSequence();
+			return;
+		}
+
+		if (worker != null)
+			s.computeSequenceSummaryStats(worker);
+		else
+			s.computeSequenceSummaryStats();
+		for (FittsTaskTwoEngineListener l : listeners)
+			l.sequenceComplete(this, s);
+
+		if (block.lastSequence()) // end of last sequence (done!)
+		{
+			finished = true;
+			if (worker != null)
+				block.buildArrays(worker); // after the stats for the last sequence
+			else
+				block.buildArrays();
+			for (FittsTaskTwoEngineListener l : listeners)
+				l.blockComplete(this, block);
+		} else
+		// prepare for the next sequence
+		{
+			block.nextSequence();
+			startSequence();
+		}
+	}
+
+	// determine if the pointer is inside the target (entering the target, or leaving the hysteresis zone)
+	private void updateInTarget(int x, int y)
+	{
+		if (!inTarget && layout.targetAt(x, y, false, activeTarget) == activeTarget)
+			inTarget = true;
+		else if (inTarget && layout.targetAt(x, y, true, activeTarget) != activeTarget)
+			inTarget = false;
+	}
+
+	/*
+	 * Set the GC pauses for the trials in the sequence. This is done at the end of the sequence, since the notification
+	 * for a pause arrives a little after the pause. Returns true if there was a pause.
+	 */
+	private boolean setGcPauses(FittsTaskTwoSequence s)
+	{
+		if (gcMonitor == null)
+			return false;
+		boolean paused = false;
+		for (int i = 0; i < numberOfTargets; ++i)
+		{
+			int pauses = gcMonitor.getPauses(trialStart[i], trialEnd[i]);
+			s.getTrial(i).setGcPauses(pauses);
+			s.getTrial(i).setGcPause(clock.toMillis(gcMonitor.getPauseTime(trialStart[i], trialEnd[i])));
+			paused |= pauses > 0;
+		}
+		return paused;
+	}
+
+	private void startSequence() throws IOException
+	{
+		trial = 0;
+		configureSequence();
+		for (FittsTaskTwoEngineListener l : listeners)
+			l.sequenceStarted(this);
+	}
+
+	// pick up the layout for the current sequence (from the plan)
+	private void configureSequence()
+	{
+		layout = plan.getLayout(block.getIDX());
+		activeTarget = layout.getTargetOrder(trial);
+	}
+
+	// -----------
+	// get methods
+	// -----------
+
+	public FittsTaskTwoBlock getBlock()
+	{
+		return block;
+	}
+
+	public FittsTaskTwoLayout getLayout()
+	{
+		return layout;
+	}
+
+	public FittsTaskTwoTrace getTrace()
+	{
+		return trace;
+	}
+
+	// the time the trial in progress started (the last release), for sample times relative to the trial
+	public long getTrialStart()
+	{
+		return buttonUp;
+	}
+
+	public int getActiveTarget()
+	{
+		return activeTarget;
+	}
+
+	public boolean isInTarget()
+	{
+		return inTarget;
+	}
+
+	public boolean isFinished()
+	{
+		return finished;
+	}
+
+	// true if the last sequence repeated was repeated because of a GC pause (not errors)
+	public boolean isGcRepeated()
+	{
+		return gcRepeated;
+	}
+
+	// the trial in progress (0 = waiting for the click that begins the sequence)
+	public int getTrial()
+	{
+		return trial;
+	}
+
+	public int getNumberOfTargets()
+	{
+		return numberOfTargets;
+	}
+
+	// sequence number (1, 2, ...) of the current sequence
+	public int getSequenceNumber()
+	{
+		return block.getIDX() + 1;
+	}
+
+	public int getNumberOfSequences()
+	{
+		return block.getSequences();
+	}
+
+	public int getA()
+	{
+		return plan.getA(block.getIDX());
+	}
+
+	public int getW()
+	{
+		return plan.getW(block.getIDX());
+	}
+}
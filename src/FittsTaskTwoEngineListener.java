@@ -0,0 +1,31 @@
+import java.io.IOException;
+
+// ---------------------------------------
+// F I T T S E N G I N E L I S T E N E R
+// ---------------------------------------
+
+/*
+ * Receives the results from a FittsTaskTwoEngine. The methods are called on the thread that feeds the engine its
+ * input events, in the order listed for each trial, sequence, and block.
+ */
+interface FittsTaskTwoEngineListener
+{
+	// a new sequence begins (also when a sequence is repeated); the layout and the active target have changed
+	void sequenceStarted(FittsTaskTwoEngine engine) throws IOException;
+
+	// the active target has advanced to the next target in the sequence
+	void targetAdvanced(FittsTaskTwoEngine engine) throws IOException;
+
+	// a trial is complete (the trial holds the results, the record holds the trace data)
+	void trialComplete(FittsTaskTwoEngine engine, FittsTaskTwoTrial t, FittsTaskTwoTraceRecord r)
+			throws IOException;
+
+	// the error rate for the sequence was over the threshold (the sequence will be repeated)
+	void sequenceRepeated(FittsTaskTwoEngine engine, FittsTaskTwoSequence s) throws IOException;
+
+	// a sequence is complete (summary statistics are computed)
+	void sequenceComplete(FittsTaskTwoEngine engine, FittsTaskTwoSequence s) throws IOException;
+
+	// the last sequence is complete (the block arrays are built, or, with a worker, the block's getters wait for them)
+	void blockComplete(FittsTaskTwoEngine engine, FittsTaskTwoBlock b) throws IOException;
+}
@@ -0,0 +1,94 @@
+// -------------------
+// F I T T S E V E N T
+// -------------------
+
+/*
+ * An event published by FittsTaskTwoPublisher: a pointer sample, the results of a trial, a sequence, or the block, or a
+ * sequence that will be repeated.
+ * Events are immutable, since they are read by the subscribers on their own threads. The results are given as they
+ * are written to the data files, so a subscriber can archive or analyse them without the FittsTaskTwo classes.
+ *
+ *      SAMPLE -- sequence, trial, t (ns since the start of the trial), x, y (as in the sd3 file)
+ *      TRIAL -- sequence, trial, data (as in the sd1 file, from A on), trace (the trace samples for the trial)
+ *      REPEAT -- sequence (the trials since the sequence started do not count; the sequence starts again)
+ *      SEQUENCE -- sequence, data (as in the sd2 file, from SRC on), trials (the sequence's lines in the sd1 file,
+ *                  from Trial on, each ending with a newline)
+ *      BLOCK -- data (the block summary, as presented at the end of the block)
+ *
+ * The GC pause and accuracy measure (TRE to MO) columns of a TRIAL event are 0, since the pauses are only known, and
+ * the measures only computed, at the end of the sequence. They are set in the trials of the SEQUENCE event.
+ */
+class FittsTaskTwoEvent
+{
+	static final int SAMPLE = 0;
+	static final int TRIAL = 1;
+	static final int SEQUENCE = 2;
+	static final int BLOCK = 3;
+	static final int REPEAT = 4;
+
+	final int type;
+	final int sequence; // sequence number (1 = first)
+	final int trial; // trial number (1 = first)
+	final long t;
+	final int x;
+	final int y;
+	final String data;
+	final FittsTaskTwoTraceRecord trace;
+	final String trials;
+
+	private FittsTaskTwoEvent(int typeArg, int sequenceArg, int trialArg, long tArg, int xArg, int yArg,
+			String dataArg, FittsTaskTwoTraceRecord traceArg, String trialsArg)
+	{
+		type = typeArg;
+		sequence = sequenceArg;
+		trial = trialArg;
+		t = tArg;
+		x = xArg;
+		y = yArg;
+		data = dataArg;
+		trace = traceArg;
+		trials = trialsArg;
+	}
+
+	static FittsTaskTwoEvent sample(int sequence, int trial, long t, int x, int y)
+	{
+		return new FittsTaskTwoEvent(SAMPLE, sequence, trial, t, x, y, null, null, null);
+	}
+
+	static FittsTaskTwoEvent trial(int sequence, int trial, String data, FittsTaskTwoTraceRecord trace)
+	{
+		return new FittsTaskTwoEvent(TRIAL, sequence, trial, 0, 0, 0, data, trace, null);
+	}
+
+	static FittsTaskTwoEvent repeat(int sequence)
+	{
+		return new FittsTaskTwoEvent(REPEAT, sequence, 0, 0, 0, 0, null, null, null);
+	}
+
+	static FittsTaskTwoEvent sequence(int sequence, String data, String trials)
+	{
+		return new FittsTaskTwoEvent(SEQUENCE, sequence, 0, 0, 0, 0, data, null, trials);
+	}
+
+	static FittsTaskTwoEvent block(String data)
+	{
+		return new FittsTaskTwoEvent(BLOCK, 0, 0, 0, 0, 0, data, null, null);
+	}
+
+	public String toString()
+	{
+		switch (type)
+		{
+			case SAMPLE:
+				return "SAMPLE " + sequence + "," + trial + "," + t + "," + x + "," + y;
+			case TRIAL:
+				return "TRIAL " + sequence + "," + trial + "," + data;
+			case REPEAT:
+				return "REPEAT " + sequence;
+			case SEQUENCE:
+				return "SEQUENCE " + sequence + "," + data;
+			default:
+				return "BLOCK";
+		}
+	}
+}
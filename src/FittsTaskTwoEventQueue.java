@@ -0,0 +1,105 @@
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.EventQueue;
+import java.awt.event.MouseEvent;
+import java.util.concurrent.atomic.AtomicLong;
+
+// -----------------------------
+// F I T T S E V E N T Q U E U E
+// -----------------------------
+
+/*
+ * An event queue that measures what happens to the mouse events between the toolkit and FittsTaskTwoFrame. It is
+ * installed with Toolkit.getSystemEventQueue().push().
+ *
+ * The toolkit does not post its events through postEvent of the pushed queue (it posts to the system queue, which
+ * forwards them privately), so nothing is measured there. When the system is busy, the queue merges a MOUSE_MOVED (or
+ * MOUSE_DRAGGED) event for a component with the one still waiting for it. Before it does, it asks the component
+ * (Component.coalesceEvents), so the window passes the question on to coalesceEvents here, where the motion events
+ * merged (i.e., samples missing from the trace) are counted. For each mouse event dispatched, the time since the
+ * event's timestamp (MouseEvent.getWhen, ms resolution) goes in a FittsTaskTwoHistogram (dwell time).
+ *
+ * Optionally, every motion event for the window is also put in a sample ring (screen coordinates, as for
+ * FittsTaskTwoSampler): the events that are dispatched, as they are dispatched, and the events that are merged away,
+ * as they are merged. The consumer drains the ring into the trace. Events are posted to the window, and retargeted to
+ * the component under the pointer when they are dispatched, so the window is the source here.
+ */
+class FittsTaskTwoEventQueue extends EventQueue
+{
+	private final FittsTaskTwoHistogram dwell; // dispatch thread only
+	private final AtomicLong coalesced; // motion events merged away
+
+	private volatile FittsTaskTwoSampleRing rawRing;
+	private volatile Component rawSource;
+	private volatile FittsTaskTwoClock rawClock;
+
+	FittsTaskTwoEventQueue()
+	{
+		dwell = new FittsTaskTwoHistogram();
+		coalesced = new AtomicLong();
+	}
+
+	/**
+	 * Put the motion events for the given window in the ring, before they can be coalesced, timestamped with the given
+	 * clock (the engine's). With the high-resolution clock, an event is stamped when it is dispatched or, if it is
+	 * merged away, when the event that replaces it is posted.
+	 */
+	public void setRawMotion(FittsTaskTwoSampleRing ring, Component window, FittsTaskTwoClock clock)
+	{
+		rawSource = window;
+		rawClock = clock;
+		rawRing = ring;
+	}
+
+	/**
+	 * Call from the window's coalesceEvents. Motion events are merged as the queue would merge them (the new event
+	 * replaces the one waiting), and counted. For other events, null is returned (the queue merges them as usual).
+	 */
+	public AWTEvent coalesceEvents(AWTEvent existingEvent, AWTEvent newEvent)
+	{
+		if (!(newEvent instanceof MouseEvent) || !isMotion((MouseEvent)newEvent))
+			return null;
+		coalesced.incrementAndGet();
+		if (rawRing != null && existingEvent.getSource() == rawSource)
+			offerRaw((MouseEvent)existingEvent);
+		return newEvent;
+	}
+
+	protected void dispatchEvent(AWTEvent e)
+	{
+		if (e instanceof MouseEvent)
+		{
+			MouseEvent me = (MouseEvent)e;
+			dwell.record(Math.max(0, System.currentTimeMillis() - me.getWhen()) * 1000000L);
+			if (isMotion(me) && rawRing != null && me.getSource() == rawSource)
+				offerRaw(me);
+		}
+		super.dispatchEvent(e);
+	}
+
+	// the ring has one producer at a time (events are merged on the posting thread and dispatched on this one)
+	private void offerRaw(MouseEvent me)
+	{
+		synchronized (rawRing)
+		{
+			rawRing.offer(rawClock.eventTime(me), me.getXOnScreen(), me.getYOnScreen());
+		}
+	}
+
+	private static boolean isMotion(MouseEvent me)
+	{
+		return me.getID() == MouseEvent.MOUSE_MOVED || me.getID() == MouseEvent.MOUSE_DRAGGED;
+	}
+
+	// number of motion events for the window coalesced so far
+	public long getCoalesced()
+	{
+		return coalesced.get();
+	}
+
+	// time from the event's timestamp to its dispatch, for the mouse events (ns, use on the Event Dispatch Thread)
+	public FittsTaskTwoHistogram getDwell()
+	{
+		return dwell;
+	}
+}
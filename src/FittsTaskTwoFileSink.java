@@ -0,0 +1,66 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+// -------------------------
+// F I T T S F I L E S I N K
+// -------------------------
+
+/*
+ * A data sink that writes to a file with group commit. Records are collected in memory and written (and flushed) in
+ * one go on commit(). Optionally, a commit also happens when the pending records reach commitSize characters or when
+ * commitInterval ms have passed since the last commit (checked on each write). A value of 0 disables a threshold.
+ */
+class FittsTaskTwoFileSink implements FittsTaskTwoDataSink
+{
+	private final Writer out;
+	private final StringBuilder pending;
+	private final int commitSize;
+	private final long commitInterval;
+	private long lastCommit;
+	private long bytesWritten;
+
+	FittsTaskTwoFileSink(String fileName, int commitSizeArg, long commitIntervalArg) throws IOException
+	{
+		out = new OutputStreamWriter(new FileOutputStream(fileName));
+		commitSize = commitSizeArg;
+		commitInterval = commitIntervalArg;
+		pending = new StringBuilder(commitSize > 0 ? commitSize + 1024 : 16 * 1024);
+		lastCommit = System.currentTimeMillis();
+		bytesWritten = 0;
+	}
+
+	public void write(CharSequence record) throws IOException
+	{
+		pending.append(record);
+		if (commitSize > 0 && pending.length() >= commitSize)
+			commit();
+		else if (commitInterval > 0 && System.currentTimeMillis() - lastCommit >= commitInterval)
+			commit();
+	}
+
+	public void commit() throws IOException
+	{
+		if (pending.length() > 0)
+		{
+			out.append(pending);
+			out.flush();
+			bytesWritten += pending.length();
+			pending.setLength(0);
+		}
+		lastCommit = System.currentTimeMillis();
+	}
+
+	public void close() throws IOException
+	{
+		commit();
+		out.close();
+	}
+
+	// number of characters committed to the file so far
+	public long getBytesWritten()
+	{
+		return bytesWritten;
+	}
+}
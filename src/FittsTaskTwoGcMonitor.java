@@ -0,0 +1,93 @@
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+
+// ---------------------------
+// F I T T S G C M O N I T O R
+// ---------------------------
+
+/*
+ * Keeps the times of the most recent garbage collection pauses, from the notifications sent by the
+ * GarbageCollectorMXBeans. A pause is kept as a start and end time in the time base of a FittsTaskTwoClock (the
+ * engine's), so it can be compared with the event times of a trial (to within a ms, the resolution of GcInfo).
+ * Collectors that run concurrently with the application (e.g., "G1 Concurrent GC", "ZGC Cycles") are ignored, since
+ * they do not stop the application.
+ *
+ * The notifications arrive on a JMX thread, shortly after the pause. The methods are synchronized, since the pauses
+ * are read on another thread (e.g., the Event Dispatch Thread).
+ */
+class FittsTaskTwoGcMonitor implements NotificationListener
+{
+	private static final int CAPACITY = 256; // pauses kept (a ring)
+
+	private final RuntimeMXBean runtime;
+	private final FittsTaskTwoClock clock;
+	private final long[] start;
+	private final long[] end;
+	private int next;
+	private int n;
+
+	FittsTaskTwoGcMonitor(FittsTaskTwoClock clockArg)
+	{
+		clock = clockArg;
+		runtime = ManagementFactory.getRuntimeMXBean();
+		start = new long[CAPACITY];
+		end = new long[CAPACITY];
+		next = 0;
+		n = 0;
+
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			if (gc instanceof NotificationEmitter)
+				((NotificationEmitter)gc).addNotificationListener(this, null, null);
+	}
+
+	public void handleNotification(Notification notification, Object handback)
+	{
+		if (!notification.getType().equals(GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION))
+			return;
+		GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo
+				.from((CompositeData)notification.getUserData());
+		if (info.getGcName().contains("Concurrent") || info.getGcName().contains("Cycles"))
+			return;
+
+		// GcInfo times are ms since the JVM started, so convert to the clock's time base
+		GcInfo gcInfo = info.getGcInfo();
+		long now = clock.now();
+		long e = now - (runtime.getUptime() - gcInfo.getEndTime()) * 1000000L;
+		long s = e - gcInfo.getDuration() * 1000000L;
+		synchronized (this)
+		{
+			start[next] = s;
+			end[next] = e;
+			next = (next + 1) % CAPACITY;
+			if (n < CAPACITY)
+				++n;
+		}
+	}
+
+	// number of pauses that overlap the interval from..to
+	public synchronized int getPauses(long from, long to)
+	{
+		int count = 0;
+		for (int i = 0; i < n; ++i)
+			if (start[i] < to && end[i] > from)
+				++count;
+		return count;
+	}
+
+	// total pause time (ns) within the interval from..to
+	public synchronized long getPauseTime(long from, long to)
+	{
+		long total = 0;
+		for (int i = 0; i < n; ++i)
+			if (start[i] < to && end[i] > from)
+				total += Math.min(end[i], to) - Math.max(start[i], from);
+		return total;
+	}
+}
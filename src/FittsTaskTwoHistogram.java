@@ -0,0 +1,93 @@
+// ---------------------------
+// F I T T S H I S T O G R A M
+// ---------------------------
+
+/*
+ * A histogram of non-negative long values (e.g., latencies in ns) with log-spaced buckets: each power of 2 is split
+ * into 16 linear sub-buckets, so a value is resolved to within about 6%. The buckets are allocated up front (960
+ * counters covers the full range of a long), so recording a value is a few arithmetic operations with no allocation
+ * and memory does not grow with the number of values.
+ */
+class FittsTaskTwoHistogram
+{
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	private final long[] counts;
+	private long count;
+	private long max;
+
+	FittsTaskTwoHistogram()
+	{
+		counts = new long[(64 - SUB_BITS) * SUB_BUCKETS];
+		count = 0;
+		max = 0;
+	}
+
+	public void record(long value)
+	{
+		if (value < 0)
+			value = 0;
+		++counts[index(value)];
+		++count;
+		if (value > max)
+			max = value;
+	}
+
+	private static int index(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int)value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int)(value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	// smallest value that goes in bucket i
+	private static long lowerBound(int i)
+	{
+		int bucket = i / SUB_BUCKETS;
+		int sub = i % SUB_BUCKETS;
+		if (bucket == 0)
+			return sub;
+		return (long)(SUB_BUCKETS + sub) << (bucket - 1);
+	}
+
+	public long getCount()
+	{
+		return count;
+	}
+
+	public long getMax()
+	{
+		return max;
+	}
+
+	/**
+	 * Returns the value at the given percentile (0-100). The value returned is the upper bound of the bucket holding
+	 * the value (but not more than the maximum value recorded).
+	 */
+	public long getPercentile(double percentile)
+	{
+		if (count == 0)
+			return 0;
+		long rank = (long)Math.ceil(percentile / 100.0 * count);
+		rank = rank < 1 ? 1 : rank;
+		long sum = 0;
+		for (int i = 0; i < counts.length; ++i)
+		{
+			sum += counts[i];
+			if (sum >= rank)
+				return i + 1 < counts.length ? Math.min(lowerBound(i + 1) - 1, max) : max;
+		}
+		return max;
+	}
+
+	public void clear()
+	{
+		for (int i = 0; i < counts.length; ++i)
+			counts[i] = 0;
+		count = 0;
+		max = 0;
+	}
+}
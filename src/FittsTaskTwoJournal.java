@@ -0,0 +1,323 @@
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+// -----------------------
+// F I T T S J O U R N A L
+// -----------------------
+
+/*
+ * An append-only binary journal of the session, written as the session proceeds, so a session can be resumed after
+ * a crash (see FittsTaskTwoJournalReplay). The sd1 and sd2 data are only written at the end of each sequence and the
+ * end of the block, but the journal has each trial as soon as it is complete.
+ *
+ * The file begins with MAGIC, followed by records. Each record is
+ *
+ *      int length, byte[length] payload, int CRC-32 of the payload
+ *
+ * and the first byte of the payload is the record type:
+ *
+ *      HEADER -- version, time base (true = high-resolution, see FittsTaskTwoClock), number of targets, number of
+ *                sequences, sequence order, A and W conditions
+ *      BEGIN -- sequence index (the sequence is starting, or starting again)
+ *      TRIAL -- sequence index, the trial's data (with the sampling audit), and its trace samples
+ *      REPEAT -- sequence index (the sequence will be repeated)
+ *      SEQUENCE -- sequence index, repeat count, and the GC pauses for each trial (the sequence is complete)
+ *      END -- the block is complete
+ *
+ * A record that is cut short (or has a bad CRC) marks the end of the journal. Each record is written through to the
+ * operating system as soon as it is complete, so the journal survives a crash of the application. It survives a crash
+ * of the system (e.g., a power loss) up to the last sync (FileChannel.force). A sync is done at most every
+ * syncInterval ms for the trial records (0 = every record) and always at the end of a sequence.
+ *
+ * The records are written (and synced) on a dedicated thread, as for FittsTaskTwoTraceWriter. The Event Dispatch
+ * Thread only puts the fixed-size part of a record in a small array and hands it over, with the immutable trace
+ * record for a TRIAL record, so the work on the EDT per click does not depend on the length of the trace or on the
+ * disk. A crash of the application loses the records still waiting for the writer (normally none).
+ */
+class FittsTaskTwoJournal implements FittsTaskTwoEngineListener, Runnable
+{
+	static final int MAGIC = 0x46545432; // "FTT2"
+	static final int VERSION = 4; // 2: the sampling audit in the TRIAL records, 3: the dropped samples, 4: the time base
+
+	static final byte HEADER = 'H';
+	static final byte BEGIN = 'B';
+	static final byte TRIAL = 'T';
+	static final byte REPEAT = 'R';
+	static final byte SEQUENCE = 'S';
+	static final byte END = 'E';
+
+	private static final int QUEUE_CAPACITY = 1024;
+	private static final Entry CLOSE = new Entry(null, null, false);
+
+	private final BlockingQueue<Entry> queue;
+	private final Thread thread;
+	private final ByteArrayOutputStream head; // the fixed-size part of the record being built (reused)
+	private final DataOutputStream data; // writes to head
+
+	// writer thread only
+	private final FileOutputStream file;
+	private final DataOutputStream out;
+	private final RecordBuffer record; // the record being written (reused)
+	private final DataOutputStream recordData; // writes to record
+	private final CRC32 crc;
+	private final FittsTaskTwoTrace samples; // the samples of the trial being written (reused)
+	private final long syncInterval; // ms
+	private long lastSync;
+
+	// a record handed to the writer thread
+	private static class Entry
+	{
+		final byte[] head; // the record (the samples are added for a TRIAL record)
+		final FittsTaskTwoTraceRecord trace; // the samples of a TRIAL record (null for other records)
+		final boolean sync; // sync after the record
+
+		Entry(byte[] headArg, FittsTaskTwoTraceRecord traceArg, boolean syncArg)
+		{
+			head = headArg;
+			trace = traceArg;
+			sync = syncArg;
+		}
+	}
+
+	/**
+	 * A new journal, for the given block, with the times on the given clock (the engine's).
+	 */
+	FittsTaskTwoJournal(String fileName, long syncIntervalArg, FittsTaskTwoBlock block, int numberOfTargets, int[] a,
+			int[] w, FittsTaskTwoClock clock) throws IOException
+	{
+		this(fileName, syncIntervalArg, -1);
+
+		out.writeInt(MAGIC); // before any record is handed over, so the writer thread is not using out yet
+		start(HEADER);
+		data.writeInt(VERSION);
+		data.writeBoolean(clock.isHighResolution());
+		data.writeInt(numberOfTargets);
+		data.writeInt(block.getSequences());
+		for (int i = 0; i < block.getSequences(); ++i)
+			data.writeInt(block.getSequenceOrder(i));
+		data.writeInt(a.length);
+		for (int i = 0; i < a.length; ++i)
+			data.writeInt(a[i]);
+		data.writeInt(w.length);
+		for (int i = 0; i < w.length; ++i)
+			data.writeInt(w[i]);
+		finish(true);
+	}
+
+	/**
+	 * An existing journal, to resume a session. Anything after the first validLength bytes (e.g., a record cut short
+	 * by a crash) is discarded. If validLength is -1, a new (empty) file is created.
+	 */
+	FittsTaskTwoJournal(String fileName, long syncIntervalArg, long validLength) throws IOException
+	{
+		file = new FileOutputStream(fileName, validLength >= 0);
+		if (validLength >= 0)
+			file.getChannel().truncate(validLength);
+		out = new DataOutputStream(new BufferedOutputStream(file, 64 * 1024));
+		record = new RecordBuffer();
+		recordData = new DataOutputStream(record);
+		crc = new CRC32();
+		samples = new FittsTaskTwoTrace();
+		syncInterval = syncIntervalArg;
+		lastSync = System.currentTimeMillis();
+
+		head = new ByteArrayOutputStream(256);
+		data = new DataOutputStream(head);
+		queue = new ArrayBlockingQueue<Entry>(QUEUE_CAPACITY);
+		thread = new Thread(this, "FittsTaskTwo journal writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void sequenceStarted(FittsTaskTwoEngine engine) throws IOException
+	{
+		start(BEGIN);
+		data.writeInt(engine.getBlock().getIDX());
+		finish(false);
+	}
+
+	public void targetAdvanced(FittsTaskTwoEngine engine)
+	{
+	}
+
+	public void trialComplete(FittsTaskTwoEngine engine, FittsTaskTwoTrial t, FittsTaskTwoTraceRecord r)
+			throws IOException
+	{
+		start(TRIAL);
+		data.writeInt(engine.getBlock().getIDX());
+		data.writeInt(r.trial);
+		data.writeInt(r.sequence);
+		data.writeDouble(t.xFrom);
+		data.writeDouble(t.yFrom);
+		data.writeDouble(t.xTo);
+		data.writeDouble(t.yTo);
+		data.writeDouble(t.xSelect);
+		data.writeDouble(t.ySelect);
+		data.writeDouble(t.getAe());
+		data.writeDouble(t.getDx());
+		data.writeDouble(t.getPT());
+		data.writeDouble(t.getST());
+		data.writeDouble(t.mt);
+		data.writeInt(t.getErr());
+		data.writeDouble(t.getOnset());
+		data.writeInt(t.getCoalesced());
+		data.writeInt(t.getDropped());
+		data.writeDouble(t.getRate());
+		data.writeDouble(t.getInterval());
+		data.writeDouble(t.getIntervalSD());
+		data.writeDouble(t.getIntervalMax());
+		data.writeInt(t.getGaps());
+		data.writeInt(t.getRaw());
+		finish(r, false); // the samples are added by the writer thread
+	}
+
+	public void sequenceRepeated(FittsTaskTwoEngine engine, FittsTaskTwoSequence s) throws IOException
+	{
+		start(REPEAT);
+		data.writeInt(engine.getBlock().getIDX());
+		finish(false);
+	}
+
+	public void sequenceComplete(FittsTaskTwoEngine engine, FittsTaskTwoSequence s) throws IOException
+	{
+		start(SEQUENCE);
+		data.writeInt(engine.getBlock().getIDX());
+		data.writeInt(s.getSequenceRepeatCount());
+		data.writeInt(s.getTrials());
+		for (int i = 0; i < s.getTrials(); ++i)
+		{
+			data.writeInt(s.getTrial(i).getGcPauses());
+			data.writeDouble(s.getTrial(i).getGcPause());
+		}
+		finish(true);
+	}
+
+	// write the END record and wait for the writer thread to finish
+	public void blockComplete(FittsTaskTwoEngine engine, FittsTaskTwoBlock b) throws IOException
+	{
+		start(END);
+		finish(true);
+		put(CLOSE);
+		try
+		{
+			thread.join();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// begin a record of the given type
+	private void start(byte type) throws IOException
+	{
+		head.reset();
+		data.writeByte(type);
+	}
+
+	// hand the record over to the writer thread
+	private void finish(boolean sync)
+	{
+		finish(null, sync);
+	}
+
+	private void finish(FittsTaskTwoTraceRecord trace, boolean sync)
+	{
+		put(new Entry(head.toByteArray(), trace, sync));
+	}
+
+	private void put(Entry e)
+	{
+		try
+		{
+			queue.put(e);
+		} catch (InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void run()
+	{
+		try
+		{
+			while (true)
+			{
+				Entry e = queue.take();
+				if (e == CLOSE)
+				{
+					out.close();
+					return;
+				}
+				write(e);
+			}
+		} catch (IOException e)
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					JOptionPane.showMessageDialog(null, "I/O error writing to journal file", "I/O Error",
+							JOptionPane.ERROR_MESSAGE);
+					System.exit(1);
+				}
+			});
+		} catch (InterruptedException e)
+		{
+		}
+	}
+
+	// frame the record (length, CRC), write it through to the operating system, and sync (maybe)
+	private void write(Entry e) throws IOException
+	{
+		record.reset();
+		record.write(e.head);
+		if (e.trace != null)
+		{
+			e.trace.decode(samples);
+			recordData.writeInt(samples.size());
+			for (int i = 0; i < samples.size(); ++i)
+			{
+				recordData.writeLong(samples.getT(i));
+				recordData.writeInt(samples.getX(i));
+				recordData.writeInt(samples.getY(i));
+			}
+		}
+
+		crc.reset();
+		crc.update(record.buffer(), 0, record.size());
+		out.writeInt(record.size());
+		record.writeTo(out);
+		out.writeInt((int)crc.getValue());
+		out.flush();
+
+		long now = System.currentTimeMillis();
+		if (e.sync || syncInterval <= 0 || now - lastSync >= syncInterval)
+		{
+			file.getChannel().force(false);
+			lastSync = now;
+		}
+	}
+
+	// a ByteArrayOutputStream with access to its buffer (to compute the CRC without a copy)
+	private static class RecordBuffer extends ByteArrayOutputStream
+	{
+		RecordBuffer()
+		{
+			super(16 * 1024);
+		}
+
+		byte[] buffer()
+		{
+			return buf;
+		}
+	}
+}
@@ -0,0 +1,188 @@
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+// -----------------------------------
+// F I T T S J O U R N A L R E P L A Y
+// -----------------------------------
+
+/*
+ * Reads a journal written by FittsTaskTwoJournal and rebuilds the block: the sequence order, and the trials (with
+ * their trace data) of each sequence that was completed. The block's current sequence is the first one that was not
+ * completed, so a FittsTaskTwoEngine for the block continues the session from there. The trace records for the
+ * completed sequences are kept, so the sd1 and sd3 data can be written again.
+ *
+ * The journal ends at the first record that is cut short or has a bad CRC (e.g., the record being written when the
+ * application crashed). getValidLength is the length of the journal up to there.
+ */
+class FittsTaskTwoJournalReplay
+{
+	private static final int MAX_RECORD = 64 * 1024 * 1024;
+
+	private FittsTaskTwoConfiguration c;
+	private FittsTaskTwoClock clock; // the time base of the session
+	private FittsTaskTwoBlock block;
+	private FittsTaskTwoTraceRecord[][] records; // [sequence][trial - 1]
+	private FittsTaskTwoTrace trace; // reused to build the trace records
+	private int completed; // number of sequences completed
+	private boolean blockComplete;
+	private long validLength;
+
+	FittsTaskTwoJournalReplay(String fileName, FittsTaskTwoConfiguration cArg, FittsTaskTwoClock clockArg)
+			throws IOException
+	{
+		c = cArg;
+		clock = clockArg;
+		trace = new FittsTaskTwoTrace();
+		completed = 0;
+		blockComplete = false;
+
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try
+		{
+			if (in.readInt() != FittsTaskTwoJournal.MAGIC)
+				throw new IOException("Not a FittsTaskTwo journal: " + fileName);
+			validLength = 4;
+
+			CRC32 crc = new CRC32();
+			while (true)
+			{
+				byte[] payload;
+				try
+				{
+					int length = in.readInt();
+					if (length < 1 || length > MAX_RECORD)
+						break;
+					payload = new byte[length];
+					in.readFully(payload);
+					crc.reset();
+					crc.update(payload, 0, length);
+					if (in.readInt() != (int)crc.getValue())
+						break;
+				} catch (EOFException e)
+				{
+					break; // the last record was cut short
+				}
+				process(new DataInputStream(new ByteArrayInputStream(payload)));
+				validLength += 4 + payload.length + 4;
+			}
+		} finally
+		{
+			in.close();
+		}
+
+		if (block == null)
+			throw new IOException("Journal has no header: " + fileName);
+	}
+
+	private void process(DataInputStream r) throws IOException
+	{
+		byte type = r.readByte();
+		if (type == FittsTaskTwoJournal.HEADER)
+		{
+			if (r.readInt() != FittsTaskTwoJournal.VERSION)
+				throw new IOException("Unsupported journal version");
+			boolean highResolution = r.readBoolean(); // the times are read in this time base
+			int numberOfTargets = r.readInt();
+			int[] sequenceOrder = new int[r.readInt()];
+			for (int i = 0; i < sequenceOrder.length; ++i)
+				sequenceOrder[i] = r.readInt();
+			int[] a = new int[r.readInt()];
+			for (int i = 0; i < a.length; ++i)
+				a[i] = r.readInt();
+			int[] w = new int[r.readInt()];
+			for (int i = 0; i < w.length; ++i)
+				w[i] = r.readInt();
+			if (numberOfTargets != c.getNumberOfTargets() || !Arrays.equals(a, c.getA())
+					|| !Arrays.equals(w, c.getW()))
+				throw new IOException("The journal does not match the configuration");
+			if (highResolution != clock.isHighResolution())
+				throw new IOException("The journal was written with highResolutionClock = "
+						+ (highResolution ? "yes" : "no"));
+
+			block = new FittsTaskTwoBlock(sequenceOrder.length, numberOfTargets, a, w, sequenceOrder);
+			records = new FittsTaskTwoTraceRecord[sequenceOrder.length][numberOfTargets];
+		} else if (type == FittsTaskTwoJournal.TRIAL)
+		{
+			// the last attempt at a sequence overwrites the trials of the previous attempts
+			int idx = r.readInt();
+			int trial = r.readInt();
+			int sequenceNumber = r.readInt();
+			FittsTaskTwoTrial t = block.getSequence(idx).getTrial(trial - 1);
+			t.setXFrom(r.readDouble());
+			t.setYFrom(r.readDouble());
+			t.setXTo(r.readDouble());
+			t.setYTo(r.readDouble());
+			t.setXSelect(r.readDouble());
+			t.setYSelect(r.readDouble());
+			t.setAe(r.readDouble());
+			t.setDx(r.readDouble());
+			t.setPt(r.readDouble());
+			t.setSt(r.readDouble());
+			t.setMt(r.readDouble());
+			t.setErr(r.readInt());
+			t.setOnset(r.readDouble());
+			t.setCoalesced(r.readInt());
+			t.setDropped(r.readInt());
+			t.setSampling(r.readDouble(), r.readDouble(), r.readDouble(), r.readDouble(), r.readInt(), r.readInt());
+			int n = r.readInt();
+			trace.clear();
+			for (int i = 0; i < n; ++i)
+				trace.add(r.readLong(), r.readInt(), r.readInt());
+			FittsTaskTwoTraceRecord tr = new FittsTaskTwoTraceRecord(sequenceNumber, trial, t, trace, clock);
+			t.setTrace(tr);
+			records[idx][trial - 1] = tr;
+		} else if (type == FittsTaskTwoJournal.SEQUENCE)
+		{
+			int idx = r.readInt();
+			FittsTaskTwoSequence s = block.getSequence(idx);
+			s.setSequenceRepeatCount(r.readInt());
+			int n = r.readInt();
+			for (int i = 0; i < n; ++i)
+			{
+				s.getTrial(i).setGcPauses(r.readInt());
+				s.getTrial(i).setGcPause(r.readDouble());
+			}
+			s.computeSequenceSummaryStats();
+			completed = idx + 1;
+			if (!block.lastSequence())
+				block.nextSequence();
+		} else if (type == FittsTaskTwoJournal.END)
+			blockComplete = true;
+
+		// BEGIN and REPEAT need nothing here (the trials are overwritten by the next attempt)
+	}
+
+	// the block, with its current sequence = the first sequence not completed
+	public FittsTaskTwoBlock getBlock()
+	{
+		return block;
+	}
+
+	public int getCompletedSequences()
+	{
+		return completed;
+	}
+
+	// the trace records for completed sequence i
+	public FittsTaskTwoTraceRecord[] getTraceRecords(int i)
+	{
+		return records[i];
+	}
+
+	// true if the block is complete, even if the END record was lost (a crash after the last sequence)
+	public boolean isBlockComplete()
+	{
+		return blockComplete || completed == block.getSequences();
+	}
+
+	public long getValidLength()
+	{
+		return validLength;
+	}
+}
@@ -0,0 +1,101 @@
+import java.awt.event.InputEvent;
+import java.io.IOException;
+import java.util.Locale;
+
+// -----------------------
+// F I T T S L A T E N C Y
+// -----------------------
+
+/*
+ * Latency added by the software itself, for each mouse event handled by FittsTaskTwoFrame:
+ *
+ * Dispatch -- from the event's timestamp (MouseEvent.getWhen) until the handler begins (ms resolution)
+ * Handler -- execution time of the handler
+ * Paint -- from the start of the handler until the repaint it requested has completed (only for events that change
+ * what is on the display)
+ * Queue -- from the event's timestamp until the event queue dispatches it (ms resolution, if a FittsTaskTwoEventQueue
+ * is used)
+ *
+ * Each measure goes in a FittsTaskTwoHistogram (ns). All methods are called on the Event Dispatch Thread.
+ */
+class FittsTaskTwoLatency
+{
+	private final FittsTaskTwoHistogram dispatch;
+	private final FittsTaskTwoHistogram handler;
+	private final FittsTaskTwoHistogram paint;
+	private FittsTaskTwoHistogram queue; // from FittsTaskTwoEventQueue (null if none)
+	private long eventStart; // start of the handler for the current event (0 if none)
+	private long paintPending; // start of the handler for the event waiting for a repaint (0 if none)
+
+	FittsTaskTwoLatency()
+	{
+		dispatch = new FittsTaskTwoHistogram();
+		handler = new FittsTaskTwoHistogram();
+		paint = new FittsTaskTwoHistogram();
+		eventStart = 0;
+		paintPending = 0;
+	}
+
+	// call at the start of an event handler
+	public void eventStart(InputEvent e)
+	{
+		eventStart = System.nanoTime();
+		dispatch.record((System.currentTimeMillis() - e.getWhen()) * 1000000L);
+	}
+
+	// call at the end of an event handler (or before it blocks, e.g., for a dialog)
+	public void eventEnd()
+	{
+		if (eventStart == 0)
+			return;
+		handler.record(System.nanoTime() - eventStart);
+		eventStart = 0;
+	}
+
+	// call when a repaint is requested
+	public void repaintRequested()
+	{
+		if (eventStart != 0 && paintPending == 0)
+			paintPending = eventStart;
+	}
+
+	// call at the end of paintComponent
+	public void paintDone()
+	{
+		if (paintPending == 0)
+			return;
+		paint.record(System.nanoTime() - paintPending);
+		paintPending = 0;
+	}
+
+	// the dwell times from the event queue (written with the other measures)
+	public void setQueue(FittsTaskTwoHistogram h)
+	{
+		queue = h;
+	}
+
+	public static String getLatencyHeader()
+	{
+		return "Measure,Count,p50(ms),p99(ms),p99.9(ms),Max(ms)";
+	}
+
+	// write one line per measure (each line begins with the lead-in)
+	public void write(FittsTaskTwoDataSink sink, String leadin) throws IOException
+	{
+		write(sink, leadin, "Dispatch", dispatch);
+		write(sink, leadin, "Handler", handler);
+		write(sink, leadin, "Paint", paint);
+		if (queue != null)
+			write(sink, leadin, "Queue", queue);
+	}
+
+	private void write(FittsTaskTwoDataSink sink, String leadin, String name, FittsTaskTwoHistogram h)
+			throws IOException
+	{
+		StringBuilder sb = new StringBuilder(leadin);
+		sb.append(name).append(',').append(h.getCount()).append(',');
+		sb.append(String.format(Locale.ROOT, "%.3f,%.3f,%.3f,%.3f\n", h.getPercentile(50.0) / 1e6,
+				h.getPercentile(99.0) / 1e6, h.getPercentile(99.9) / 1e6, h.getMax() / 1e6));
+		sink.write(sb);
+	}
+}
@@ -0,0 +1,265 @@
+// ---------------------
+// F I T T S L A Y O U T
+// ---------------------
+
+/*
+ * Geometry of the targets for a sequence (one A x W condition, see FittsTaskTwoPlan): the n targets are equally spaced on a layout circle (diameter = A) around
+ * the centre of the task panel. For each target we keep the centre (as drawn, and rounded to a pixel for the from/to
+ * coordinates in the output data). The squared target radius and the squared radius of the hysteresis zone (radius x
+ * hysteresis factor) are precomputed, so hit-testing is plain arithmetic with no allocation.
+ *
+ * The layout also holds the order in which the targets are selected (targetOrder), and the from and to points for
+ * each trial (the rounded centres of the targets for trials i - 1 and i in targetOrder). This class has no dependence on
+ * Swing, so it is shared by the task panel (rendering) and the trial engine (hit-testing).
+ *
+ * The targets are also entered in a uniform grid (cell size = diameter of the hysteresis zone). A point is only
+ * tested against the targets in its cell, so finding the target under the pointer takes constant time, even with
+ * hundreds of targets.
+ */
+class FittsTaskTwoLayout
+{
+	private int numberOfTargets;
+	private double hysteresis;
+	private int[] targetOrder;
+
+	private double[] cx; // target centres (as drawn)
+	private double[] cy;
+	private int[] centerX; // target centres (rounded)
+	private int[] centerY;
+	private int[] fromX; // from and to points for each trial (trial 1 = index 0)
+	private int[] fromY;
+	private int[] toX;
+	private int[] toY;
+	private double width; // target width (diameter)
+	private double r2; // squared target radius
+	private double h2; // squared radius of the hysteresis zone
+
+	// uniform grid (cell i,j holds cellTarget[cellStart[k]] .. cellTarget[cellStart[k + 1] - 1], k = j * cols + i)
+	private double gridX;
+	private double gridY;
+	private double cellSize;
+	private int cols;
+	private int rows;
+	private int[] cellStart;
+	private int[] cellTarget;
+
+	FittsTaskTwoLayout(int numberOfTargetsArg, double hysteresisArg)
+	{
+		numberOfTargets = numberOfTargetsArg;
+		hysteresis = hysteresisArg;
+		cx = new double[numberOfTargets];
+		cy = new double[numberOfTargets];
+		centerX = new int[numberOfTargets];
+		centerY = new int[numberOfTargets];
+		fromX = new int[numberOfTargets];
+		fromY = new int[numberOfTargets];
+		toX = new int[numberOfTargets];
+		toY = new int[numberOfTargets];
+		cellStart = new int[1];
+		cellTarget = new int[0];
+
+		/*
+		 * Build an array of indices of the order of highlighted targets. The algorithm is slightly different if the
+		 * number of targets is odd. An advantage of using an odd number of targets is that the movement amplitude
+		 * is exactly the same for all trials. If the number of targets is even, the movement amplitude is different
+		 * from one trial to the next. "+1" is used because the first selection is used just to start the sequence.
+		 */
+		targetOrder = new int[numberOfTargets + 1];
+		targetOrder[0] = numberOfTargets / 4 * 3; // 1st target is at the top (3/4 around circle)
+
+		int inc = numberOfTargets / 2 + numberOfTargets % 2;
+		if (numberOfTargets % 2 == 0) // even number of targets
+			for (int i = 1; i < numberOfTargets + 1; ++i)
+				targetOrder[i] = (targetOrder[i - 1] + (numberOfTargets + 1) / 2 + ((i + 1) % 2)) % numberOfTargets;
+		else
+			// odd number of targets
+			for (int i = 1; i < numberOfTargets + 1; ++i)
+				targetOrder[i] = (inc + targetOrder[i - 1]) % numberOfTargets;
+	}
+
+	/**
+	 * Lay out the targets for amplitude a and width w in a panel of the given size, and rebuild the grid.
+	 */
+	public void configure(int panelWidth, int panelHeight, int a, int w)
+	{
+		double centreX = panelWidth / 2;
+		double centreY = panelHeight / 2;
+		for (int i = 0; i < numberOfTargets; ++i)
+		{
+			double x = centreX + (a / 2) * Math.cos(2 * Math.PI * ((double)i / numberOfTargets));
+			double y = centreY + (a / 2) * Math.sin(2 * Math.PI * ((double)i / numberOfTargets));
+			centerX[i] = (int)Math.round(x);
+			centerY[i] = (int)Math.round(y);
+
+			// the target is drawn in a w x w square with its top-left corner at x - w / 2, y - w / 2
+			cx[i] = x - w / 2 + w / 2.0;
+			cy[i] = y - w / 2 + w / 2.0;
+		}
+		for (int i = 0; i < numberOfTargets; ++i)
+		{
+			fromX[i] = centerX[targetOrder[i]];
+			fromY[i] = centerY[targetOrder[i]];
+			toX[i] = centerX[targetOrder[i + 1]];
+			toY[i] = centerY[targetOrder[i + 1]];
+		}
+		width = w;
+		double radius = w / 2.0;
+		r2 = radius * radius;
+		h2 = r2 * hysteresis * hysteresis;
+		buildGrid(radius * Math.max(hysteresis, 1.0));
+	}
+
+	private void buildGrid(double zoneRadius)
+	{
+		double xMin = Double.MAX_VALUE, yMin = Double.MAX_VALUE;
+		double xMax = -Double.MAX_VALUE, yMax = -Double.MAX_VALUE;
+		for (int i = 0; i < numberOfTargets; ++i)
+		{
+			xMin = Math.min(xMin, cx[i] - zoneRadius);
+			yMin = Math.min(yMin, cy[i] - zoneRadius);
+			xMax = Math.max(xMax, cx[i] + zoneRadius);
+			yMax = Math.max(yMax, cy[i] + zoneRadius);
+		}
+		gridX = xMin;
+		gridY = yMin;
+		cellSize = Math.max(2.0 * zoneRadius, 1.0);
+		cols = (int)((xMax - xMin) / cellSize) + 1;
+		rows = (int)((yMax - yMin) / cellSize) + 1;
+
+		// count the targets per cell, then fill (each target goes in every cell its bounding box overlaps)
+		cellStart = new int[cols * rows + 1];
+		for (int pass = 0; pass < 2; ++pass)
+		{
+			int[] fill = pass == 0 ? null : new int[cols * rows];
+			for (int i = 0; i < numberOfTargets; ++i)
+			{
+				int i0 = column(cx[i] - zoneRadius), i1 = column(cx[i] + zoneRadius);
+				int j0 = row(cy[i] - zoneRadius), j1 = row(cy[i] + zoneRadius);
+				for (int j = j0; j <= j1; ++j)
+					for (int k = i0; k <= i1; ++k)
+					{
+						int cell = j * cols + k;
+						if (pass == 0)
+							++cellStart[cell + 1];
+						else
+							cellTarget[cellStart[cell] + fill[cell]++] = i;
+					}
+			}
+			if (pass == 0)
+			{
+				for (int k = 0; k < cols * rows; ++k)
+					cellStart[k + 1] += cellStart[k];
+				cellTarget = new int[cellStart[cols * rows]];
+			}
+		}
+	}
+
+	private int column(double x)
+	{
+		int i = (int)((x - gridX) / cellSize);
+		return i < 0 ? 0 : i >= cols ? cols - 1 : i;
+	}
+
+	private int row(double y)
+	{
+		int j = (int)((y - gridY) / cellSize);
+		return j < 0 ? 0 : j >= rows ? rows - 1 : j;
+	}
+
+	/**
+	 * Returns true if x,y is inside target i (or inside its hysteresis zone, if hysteresisZone is true).
+	 */
+	public boolean contains(int i, double x, double y, boolean hysteresisZone)
+	{
+		double dx = x - cx[i];
+		double dy = y - cy[i];
+		return dx * dx + dy * dy < (hysteresisZone ? h2 : r2);
+	}
+
+	/**
+	 * Returns the target at x,y (or -1 if there isn't one). If the point is inside more than one target (hysteresis
+	 * zones may overlap), the preferred target is returned if it is one of them.
+	 */
+	public int targetAt(double x, double y, boolean hysteresisZone, int preferred)
+	{
+		if (x < gridX || y < gridY || x >= gridX + cols * cellSize || y >= gridY + rows * cellSize)
+			return -1;
+
+		int cell = row(y) * cols + column(x);
+		int hit = -1;
+		for (int k = cellStart[cell]; k < cellStart[cell + 1]; ++k)
+		{
+			int i = cellTarget[k];
+			if (contains(i, x, y, hysteresisZone))
+			{
+				if (i == preferred)
+					return i;
+				if (hit == -1)
+					hit = i;
+			}
+		}
+		return hit;
+	}
+
+	public int getNumberOfTargets()
+	{
+		return numberOfTargets;
+	}
+
+	// the target to select for trial i (i = 0 is the click that begins the sequence)
+	public int getTargetOrder(int i)
+	{
+		return targetOrder[i];
+	}
+
+	public int getCenterX(int i)
+	{
+		return centerX[i];
+	}
+
+	public int getCenterY(int i)
+	{
+		return centerY[i];
+	}
+
+	// the from and to points for trial i (1, 2, ...)
+	public int getFromX(int i)
+	{
+		return fromX[i - 1];
+	}
+
+	public int getFromY(int i)
+	{
+		return fromY[i - 1];
+	}
+
+	public int getToX(int i)
+	{
+		return toX[i - 1];
+	}
+
+	public int getToY(int i)
+	{
+		return toY[i - 1];
+	}
+
+	public double getWidth()
+	{
+		return width;
+	}
+
+	public double getHysteresis()
+	{
+		return hysteresis;
+	}
+
+	public double getX(int i)
+	{
+		return cx[i];
+	}
+
+	public double getY(int i)
+	{
+		return cy[i];
+	}
+}
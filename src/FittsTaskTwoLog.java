@@ -0,0 +1,183 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+// ---------------
+// F I T T S L O G
+// ---------------
+
+/*
+ * Diagnostic log for the paths that run on the Event Dispatch Thread (painting, layout, input). A console print there
+ * is synchronous I/O, which stalls the rendering and the input; a log record here is a few stores into memory.
+ *
+ * Each record is fixed size: a timestamp (System.nanoTime), the level, the event (one of the constants below, with its
+ * message in MESSAGE), and three arguments (longs, or doubles as raw bits). The records go into a ring buffer that is
+ * allocated once (CAPACITY records, the oldest are overwritten), and nothing is formatted until the log is dumped: on
+ * demand (dump), or when a thread dies with an uncaught exception (installCrashHandler). Records finer than the level
+ * (setLevel) cost one comparison.
+ *
+ * The log may be written from any thread (a slot is claimed with an atomic increment). A record written while the
+ * log is dumped may appear half written in the dump.
+ */
+class FittsTaskTwoLog
+{
+	static final int ERROR = 0;
+	static final int WARN = 1;
+	static final int INFO = 2;
+	static final int DEBUG = 3;
+	static final String[] LEVEL = { "ERROR", "WARN", "INFO", "DEBUG" };
+
+	// events (the arguments are filled in the message, in order)
+	static final int START = 0;
+	static final int PANEL = 1;
+	static final int CONFIGURE = 2;
+	static final int TARGET = 3;
+	static final int DRAW_TARGETS = 4;
+	static final int DRAW_TRACES = 5;
+	static final int KEY = 6;
+	static final int CRASH = 7;
+	static final int WARM_UP = 8;
+	static final int WARM_UP_UNSTABLE = 9;
+	static final String[] MESSAGE = { "%s started", "task panel created (%d targets)",
+			"configure: sequence %d of %d (%d targets)", "target %d at x = %.1f, y = %.1f",
+			"drawTargets: sequence %d", "drawTraces: sequence %d", "key typed: %c", "uncaught exception in thread %d",
+			"warm-up: %d blocks, %d ms", "warm-up: %d blocks, %d ms (stopped at time limit, not stable)" };
+
+	static final int CAPACITY = 4096; // records (a power of 2)
+	private static final int FIELDS = 5; // time, header (level, event, double flags), a, b, c
+	private static final int DOUBLE_B = 1 << 16; // b is a double (raw bits)
+	private static final int DOUBLE_C = 1 << 17; // c is a double (raw bits)
+
+	private static final long[] ring = new long[CAPACITY * FIELDS];
+	private static final AtomicLong next = new AtomicLong(); // records written (ever)
+	private static volatile int level = INFO;
+	private static volatile String dumpFile = "FittsTaskTwo.log";
+	private static String app = "FittsTaskTwo";
+
+	static void setLevel(int levelArg)
+	{
+		level = levelArg;
+	}
+
+	// the level for a name (error, warn, info, debug), or -1 if the name is not a level
+	static int parseLevel(String s)
+	{
+		for (int i = 0; i < LEVEL.length; ++i)
+			if (LEVEL[i].equalsIgnoreCase(s))
+				return i;
+		return -1;
+	}
+
+	static void log(int levelArg, int event, long a, long b, long c)
+	{
+		if (levelArg <= level)
+			put(levelArg, event, a, b, c);
+	}
+
+	static void log(int levelArg, int event, long a, double b, double c)
+	{
+		if (levelArg <= level)
+			put(levelArg | DOUBLE_B | DOUBLE_C, event, a, Double.doubleToRawLongBits(b), Double.doubleToRawLongBits(c));
+	}
+
+	static void log(int levelArg, int event, long a)
+	{
+		if (levelArg <= level)
+			put(levelArg, event, a, 0, 0);
+	}
+
+	private static void put(int header, int event, long a, long b, long c)
+	{
+		int i = (int)(next.getAndIncrement() & (CAPACITY - 1)) * FIELDS;
+		ring[i] = System.nanoTime();
+		ring[i + 1] = header | event << 8;
+		ring[i + 2] = a;
+		ring[i + 3] = b;
+		ring[i + 4] = c;
+	}
+
+	/**
+	 * Write the records in the ring buffer, oldest first, with the time in ms since the oldest record.
+	 */
+	static void dump(PrintStream out)
+	{
+		long n = next.get();
+		long first = Math.max(0, n - CAPACITY);
+		out.println(app + " log: " + (n - first) + " records" + (first > 0 ? " (" + first
+				+ " older records overwritten)" : ""));
+		if (n == first)
+			return;
+		long t0 = ring[(int)(first & (CAPACITY - 1)) * FIELDS];
+		Object[] args = new Object[3];
+		for (long k = first; k < n; ++k)
+		{
+			int i = (int)(k & (CAPACITY - 1)) * FIELDS;
+			int header = (int)ring[i + 1];
+			int event = header >> 8 & 0xff;
+			if (event >= MESSAGE.length)
+				continue; // half written
+			args[0] = ring[i + 2];
+			args[1] = (header & DOUBLE_B) != 0 ? (Object)Double.longBitsToDouble(ring[i + 3]) : (Object)ring[i + 3];
+			args[2] = (header & DOUBLE_C) != 0 ? (Object)Double.longBitsToDouble(ring[i + 4]) : (Object)ring[i + 4];
+			if (event == KEY)
+				args[0] = (char)ring[i + 2];
+			else if (event == START)
+				args[0] = app;
+			out.printf("%12.3f ms %-5s ", (ring[i] - t0) / 1e6, LEVEL[header & 0xff]);
+			out.println(String.format(MESSAGE[event], args));
+		}
+	}
+
+	// the file for dumpToFile and the crash handler
+	static void setDumpFile(String fileName)
+	{
+		dumpFile = fileName;
+	}
+
+	/**
+	 * Dump the log to the dump file (replacing it), e.g., on a key press.
+	 */
+	static void dumpToFile() throws IOException
+	{
+		PrintStream out = new PrintStream(new FileOutputStream(dumpFile));
+		dump(out);
+		out.close();
+		if (out.checkError())
+			throw new IOException("Error writing " + dumpFile);
+	}
+
+	/**
+	 * Log the start of the application, and dump the log (with the stack trace) if a thread dies with an uncaught
+	 * exception. Exceptions on the Event Dispatch Thread are included.
+	 */
+	static void installCrashHandler(String appArg)
+	{
+		app = appArg;
+		dumpFile = appArg + ".log";
+		log(INFO, START, 0);
+		final Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler()
+		{
+			public void uncaughtException(Thread t, Throwable e)
+			{
+				log(ERROR, CRASH, t.getId());
+				try
+				{
+					PrintStream out = new PrintStream(new FileOutputStream(dumpFile, true));
+					e.printStackTrace(out);
+					dump(out);
+					out.close();
+					System.err.println("Uncaught exception (" + e + "), log written to " + dumpFile);
+				} catch (IOException ex)
+				{
+					dump(System.err);
+				}
+				if (previous != null)
+					previous.uncaughtException(t, e);
+				else
+					e.printStackTrace();
+			}
+		});
+	}
+}
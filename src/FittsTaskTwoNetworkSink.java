@@ -0,0 +1,203 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+// ----------------------------------
+// F I T T S N E T W O R K S I N K
+// ----------------------------------
+
+/*
+ * Streams the results of a session to a FittsTaskTwoCollector, which gathers the data from many stations. The sink is
+ * a subscriber to the session's results (FittsTaskTwoPublisher.subscribeResults, so none are dropped), and the socket
+ * writes are done on a publisher thread and do not slow the task. The data files are written as usual; if the
+ * connection fails, the sink stops.
+ *
+ * The stream is a series of messages. Each message is
+ *
+ *      int length, byte[length] payload
+ *
+ * and the payload is a type byte, two ints, and UTF-8 text (to the end of the payload), so the length is from
+ * MIN_MESSAGE to MAX_MESSAGE:
+ *
+ *      HELLO -- VERSION, 0, the station name (see getStationName; no commas or newlines)
+ *      TRIAL -- sequence, trial, the trial's line for the sd1 file, as of the end of the trial
+ *      TRACE -- sequence, trial, the trial's three lines for the sd3 file
+ *      REPEAT -- sequence, 0, nothing (the sequence will be repeated, so its traces so far do not count)
+ *      SEQUENCE -- sequence, 0, the sequence's line for the sd2 file, then its lines for the sd1 file
+ *      END -- 0, 0, nothing (the block is complete)
+ *
+ * The lines are as in the data files, with the App,Participant,Condition,Block lead-in, and each ends with a newline.
+ * The TRIAL lines are for live monitoring: the GC pause and accuracy measure columns are 0, since these are only
+ * known at the end of the sequence (so the sd1 lines of the SEQUENCE message are the ones to keep). The SEQUENCE message for a sequence
+ * can arrive after the first TRIAL and TRACE messages of the next sequence.
+ */
+class FittsTaskTwoNetworkSink implements Flow.Subscriber<FittsTaskTwoEvent>
+{
+	static final int DEFAULT_PORT = 5150;
+	static final int VERSION = 1;
+	static final int MIN_MESSAGE = 1 + 4 + 4; // bytes (no text)
+	static final int MAX_MESSAGE = 16 * 1024 * 1024; // bytes (the trace of a trial of over an hour at 1000 Hz)
+
+	static final byte HELLO = 'H';
+	static final byte TRIAL = 'T';
+	static final byte TRACE = 'X';
+	static final byte REPEAT = 'R';
+	static final byte SEQUENCE = 'S';
+	static final byte END = 'E';
+
+	private final SocketChannel channel;
+	private final String leadin; // App,Participant,Condition,Block,
+	private final StringBuilder sb;
+	private final FittsTaskTwoTrace samples; // for formatting the trace lines (reused)
+	private final CountDownLatch closed;
+	private ByteBuffer buffer; // the message being sent (grows)
+	private Flow.Subscription subscription;
+
+	/**
+	 * Connect to the collector at address (host:port, or host for the default port).
+	 */
+	FittsTaskTwoNetworkSink(String address, String station, FittsTaskTwoConfiguration c) throws IOException
+	{
+		String host = address;
+		int port = DEFAULT_PORT;
+		int colon = address.lastIndexOf(':');
+		if (colon >= 0)
+		{
+			host = address.substring(0, colon);
+			port = Integer.parseInt(address.substring(colon + 1));
+		}
+		channel = SocketChannel.open(new InetSocketAddress(host, port));
+		leadin = "FittsTaskTwo" + "," + c.getParticipantCode() + "," + c.getConditionCode() + "," + c.getBlockCode()
+				+ ",";
+		sb = new StringBuilder();
+		samples = new FittsTaskTwoTrace();
+		closed = new CountDownLatch(1);
+		buffer = ByteBuffer.allocate(16 * 1024);
+		send(HELLO, VERSION, 0, station);
+	}
+
+	// the name of this computer
+	static String getHostName()
+	{
+		try
+		{
+			return InetAddress.getLocalHost().getHostName();
+		} catch (UnknownHostException e)
+		{
+			return "unknown";
+		}
+	}
+
+	/**
+	 * The name of a station: the computer (or another name for it), with the participant, condition, and block codes,
+	 * so that two stations on one computer (e.g., localhost) are told apart.
+	 */
+	static String getStationName(String host, FittsTaskTwoConfiguration c)
+	{
+		String name = host + "/" + c.getParticipantCode() + "-" + c.getConditionCode() + "-" + c.getBlockCode();
+		return name.replace(',', '_').replace('\n', '_');
+	}
+
+	// wait until the stream is finished (the block is complete, or the connection failed)
+	public void awaitClosed() throws InterruptedException
+	{
+		closed.await();
+	}
+
+	// as above, but for at most timeout ms (true if the stream is finished)
+	public boolean awaitClosed(long timeout) throws InterruptedException
+	{
+		return closed.await(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	public void onSubscribe(Flow.Subscription s)
+	{
+		subscription = s;
+		s.request(Long.MAX_VALUE);
+	}
+
+	public void onNext(FittsTaskTwoEvent e)
+	{
+		if (!channel.isOpen())
+			return; // the connection failed
+		try
+		{
+			if (e.type == FittsTaskTwoEvent.TRIAL)
+			{
+				sb.setLength(0);
+				sb.append(leadin).append(e.trial - 1).append(',').append(e.data).append('\n'); // as numbered in sd1
+				send(TRIAL, e.sequence, e.trial, sb);
+				sb.setLength(0);
+				FittsTaskTwoTraceWriter.format(sb, leadin, e.trace, samples);
+				send(TRACE, e.sequence, e.trial, sb);
+			} else if (e.type == FittsTaskTwoEvent.REPEAT)
+				send(REPEAT, e.sequence, 0, "");
+			else if (e.type == FittsTaskTwoEvent.SEQUENCE)
+			{
+				sb.setLength(0);
+				sb.append(leadin).append(e.data).append('\n');
+				int start = 0;
+				for (int end = e.trials.indexOf('\n'); end >= 0; end = e.trials.indexOf('\n', start))
+				{
+					sb.append(leadin).append(e.trials, start, end + 1);
+					start = end + 1;
+				}
+				send(SEQUENCE, e.sequence, 0, sb);
+			}
+		} catch (IOException ex)
+		{
+			System.err.println("Connection to collector failed: " + ex.getMessage());
+			subscription.cancel();
+			close();
+		}
+	}
+
+	public void onError(Throwable t)
+	{
+		close();
+	}
+
+	public void onComplete()
+	{
+		try
+		{
+			send(END, 0, 0, "");
+		} catch (IOException e)
+		{
+		}
+		close();
+	}
+
+	private void send(byte type, int a, int b, CharSequence text) throws IOException
+	{
+		byte[] s = text.toString().getBytes(StandardCharsets.UTF_8);
+		int length = MIN_MESSAGE + s.length;
+		if (length > MAX_MESSAGE)
+			throw new IOException("Message too large (" + length + " bytes)");
+		if (buffer.capacity() < 4 + length)
+			buffer = ByteBuffer.allocate(Math.max(4 + length, 2 * buffer.capacity()));
+		buffer.clear();
+		buffer.putInt(length).put(type).putInt(a).putInt(b).put(s);
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	private void close()
+	{
+		try
+		{
+			channel.close();
+		} catch (IOException e)
+		{
+		}
+		closed.countDown();
+	}
+}
@@ -0,0 +1,70 @@
+// -----------------
+// F I T T S P L A N
+// -----------------
+
+/*
+ * The plan for a block: the target layout for each sequence, computed once, before the block begins. There is one
+ * FittsTaskTwoLayout per A x W condition (the target centres, radii, target order, and the from/to points for each
+ * trial, in primitive arrays), and the sequences refer to the layout for their condition. Moving on to the next
+ * sequence is just a matter of picking up another layout, with no geometry to compute and nothing to allocate.
+ *
+ * The layouts depend on the size of the task panel, so they are computed again (all of them) if the panel is resized.
+ */
+class FittsTaskTwoPlan
+{
+	private FittsTaskTwoLayout[] conditionLayout; // index = idxA * w.length + idxW
+	private FittsTaskTwoLayout[] sequenceLayout; // index = sequence number in the block (0, 1, ...)
+	private int[] conditionA;
+	private int[] conditionW;
+	private int[] sequenceA;
+	private int[] sequenceW;
+
+	FittsTaskTwoPlan(int numberOfTargets, double hysteresis, int[] a, int[] w, FittsTaskTwoBlock block)
+	{
+		conditionLayout = new FittsTaskTwoLayout[a.length * w.length];
+		conditionA = new int[conditionLayout.length];
+		conditionW = new int[conditionLayout.length];
+		for (int i = 0; i < conditionLayout.length; ++i)
+		{
+			conditionLayout[i] = new FittsTaskTwoLayout(numberOfTargets, hysteresis);
+			conditionA[i] = a[i / w.length];
+			conditionW[i] = w[i % w.length];
+		}
+
+		sequenceLayout = new FittsTaskTwoLayout[block.getSequences()];
+		sequenceA = new int[sequenceLayout.length];
+		sequenceW = new int[sequenceLayout.length];
+		for (int i = 0; i < sequenceLayout.length; ++i)
+		{
+			int condition = block.getSequenceOrder(i);
+			sequenceLayout[i] = conditionLayout[condition];
+			sequenceA[i] = conditionA[condition];
+			sequenceW[i] = conditionW[condition];
+		}
+	}
+
+	/**
+	 * Lay out the targets for every condition in a panel of the given size.
+	 */
+	public void configure(int panelWidth, int panelHeight)
+	{
+		for (int i = 0; i < conditionLayout.length; ++i)
+			conditionLayout[i].configure(panelWidth, panelHeight, conditionA[i], conditionW[i]);
+	}
+
+	// the layout for sequence i
+	public FittsTaskTwoLayout getLayout(int i)
+	{
+		return sequenceLayout[i];
+	}
+
+	public int getA(int i)
+	{
+		return sequenceA[i];
+	}
+
+	public int getW(int i)
+	{
+		return sequenceW[i];
+	}
+}
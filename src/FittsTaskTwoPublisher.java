@@ -0,0 +1,200 @@
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+
+// ---------------------------
+// F I T T S P U B L I S H E R
+// ---------------------------
+
+/*
+ * Publishes the events of a session (FittsTaskTwoEvent) to any number of subscribers in the same process, e.g., for
+ * monitoring, live analysis, or archiving. Subscribe with FittsTaskTwoFrame.getEvents().subscribe(...).
+ *
+ * Each subscriber has its own bounded buffer (BUFFER events) and receives the events on a thread from the publisher's
+ * pool, as it requests them (Flow backpressure). The thread that captures the events (the Event Dispatch Thread) never
+ * waits for a subscriber: if a subscriber's buffer is full, the event is dropped for that subscriber only, and counted
+ * (getDropped). So a slow subscriber does not slow the capture or the other subscribers.
+ *
+ * A subscriber that must have every result (e.g., for archiving) subscribes with subscribeResults instead: it gets
+ * the trial, repeat, sequence, and block events, but no samples (so they do not fill its buffer), and these are never
+ * dropped. They go into an unbounded queue, from which a thread of their own hands them to the subscribers, waiting
+ * while a subscriber's buffer is full. So a slow result subscriber delays the other result subscribers, but not the
+ * capture; the results of a session are small (one event per trial, with its trace).
+ *
+ * The sample events are published by FittsTaskTwoFrame as the mouse events are handled, as captured (all of them,
+ * before the trace is decimated); the trial, sequence, and block events come from the engine (as a
+ * FittsTaskTwoEngineListener). The sequence results are computed on the worker (see FittsTaskTwoEngine.setWorker), so
+ * the sequence and block events are published from there (a sequence event can come after the first events of the
+ * next sequence; each event has its sequence number). No events are built if there are no subscribers.
+ */
+class FittsTaskTwoPublisher implements Flow.Publisher<FittsTaskTwoEvent>, FittsTaskTwoEngineListener
+{
+	static final int BUFFER = 4096; // events buffered for each subscriber (4 s of samples at 1000 Hz)
+
+	private final SubmissionPublisher<FittsTaskTwoEvent> publisher;
+	private final SubmissionPublisher<FittsTaskTwoEvent> results; // for subscribeResults
+	private final LinkedBlockingQueue<FittsTaskTwoEvent> pending; // results not yet handed to their subscribers
+	private final Executor worker; // publishes the sequence and block events (null = on the calling thread)
+	private final AtomicLong dropped;
+	private final BiPredicate<Flow.Subscriber<? super FittsTaskTwoEvent>, FittsTaskTwoEvent> onDrop;
+
+	private static final FittsTaskTwoEvent CLOSE = FittsTaskTwoEvent.block(null); // the end of the results
+
+	FittsTaskTwoPublisher(Executor workerArg)
+	{
+		worker = workerArg;
+		dropped = new AtomicLong();
+		ExecutorService pool = Executors.newCachedThreadPool(new ThreadFactory()
+		{
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "FittsTaskTwo publisher");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		publisher = new SubmissionPublisher<FittsTaskTwoEvent>(pool, BUFFER); // the pool delivers the events
+		results = new SubmissionPublisher<FittsTaskTwoEvent>(pool, BUFFER);
+		pending = new LinkedBlockingQueue<FittsTaskTwoEvent>();
+		onDrop = new BiPredicate<Flow.Subscriber<? super FittsTaskTwoEvent>, FittsTaskTwoEvent>()
+		{
+			public boolean test(Flow.Subscriber<? super FittsTaskTwoEvent> s, FittsTaskTwoEvent e)
+			{
+				dropped.incrementAndGet();
+				return false; // do not retry
+			}
+		};
+		Thread t = new Thread(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					for (FittsTaskTwoEvent e = pending.take(); e != CLOSE; e = pending.take())
+						results.submit(e); // waits while a subscriber's buffer is full
+				} catch (InterruptedException e)
+				{
+				}
+				results.close();
+			}
+		}, "FittsTaskTwo results");
+		t.setDaemon(true);
+		t.start();
+	}
+
+	public void subscribe(Flow.Subscriber<? super FittsTaskTwoEvent> s)
+	{
+		publisher.subscribe(s);
+	}
+
+	/**
+	 * Subscribe to the results only (no sample events), without losing any: see above.
+	 */
+	public void subscribeResults(Flow.Subscriber<? super FittsTaskTwoEvent> s)
+	{
+		results.subscribe(s);
+	}
+
+	public boolean hasSubscribers()
+	{
+		return publisher.hasSubscribers() || results.hasSubscribers();
+	}
+
+	// events dropped because a subscriber's buffer was full (all subscribers, but not the result subscribers)
+	public long getDropped()
+	{
+		return dropped.get();
+	}
+
+	// a pointer sample for the trial in progress (t = ns since the start of the trial)
+	public void sample(FittsTaskTwoEngine engine, long t, int x, int y)
+	{
+		if (publisher.hasSubscribers())
+			offer(FittsTaskTwoEvent.sample(engine.getSequenceNumber(), engine.getTrial(), t, x, y));
+	}
+
+	private void offer(FittsTaskTwoEvent e)
+	{
+		publisher.offer(e, onDrop);
+	}
+
+	// a result, to all the subscribers
+	private void publish(FittsTaskTwoEvent e)
+	{
+		if (publisher.hasSubscribers())
+			offer(e);
+		if (results.hasSubscribers())
+			pending.add(e);
+	}
+
+	// run on the worker, after the sequence summary stats (or here, if there is no worker)
+	private void later(Runnable r)
+	{
+		if (worker != null)
+			worker.execute(r);
+		else
+			r.run();
+	}
+
+	// ------------------------------------------------
+	// implement FittsTaskTwoEngineListener methods (6)
+	// ------------------------------------------------
+
+	public void sequenceStarted(FittsTaskTwoEngine engine)
+	{
+	}
+
+	public void targetAdvanced(FittsTaskTwoEngine engine)
+	{
+	}
+
+	public void trialComplete(FittsTaskTwoEngine engine, FittsTaskTwoTrial t, FittsTaskTwoTraceRecord r)
+	{
+		if (hasSubscribers())
+			publish(FittsTaskTwoEvent.trial(r.sequence, r.trial, t.getTrialData(), r));
+	}
+
+	public void sequenceRepeated(FittsTaskTwoEngine engine, FittsTaskTwoSequence s)
+	{
+		if (hasSubscribers())
+			publish(FittsTaskTwoEvent.repeat(engine.getSequenceNumber()));
+	}
+
+	public void sequenceComplete(FittsTaskTwoEngine engine, final FittsTaskTwoSequence s)
+	{
+		if (!hasSubscribers())
+			return;
+		final int sequence = engine.getSequenceNumber();
+		later(new Runnable()
+		{
+			public void run()
+			{
+				StringBuilder trials = new StringBuilder();
+				for (int i = 0; i < s.getTrials(); ++i)
+					trials.append(s.getTrialData(i)).append('\n');
+				publish(FittsTaskTwoEvent.sequence(sequence, s.getSequenceData(), trials.toString()));
+			}
+		});
+	}
+
+	// the last event (the subscribers then get onComplete)
+	public void blockComplete(FittsTaskTwoEngine engine, final FittsTaskTwoBlock b)
+	{
+		later(new Runnable()
+		{
+			public void run()
+			{
+				if (hasSubscribers())
+					publish(FittsTaskTwoEvent.block(b.getBlockSummary()));
+				publisher.close();
+				pending.add(CLOSE);
+			}
+		});
+	}
+}
@@ -0,0 +1,180 @@
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+// -------------------------
+// F I T T S R E C O R D E R
+// -------------------------
+
+/*
+ * Writes the results from a FittsTaskTwoEngine to the sd1, sd2, and sd3 data sinks. The sd1 and sd3 records for a
+ * sequence are committed when the sequence is complete (and the sd3 records are dropped if the sequence is repeated).
+ * The sd2 records are written when the block is complete, and then the sinks are closed.
+ *
+ * Optionally, the sd1 records are formatted and written on a worker (the executor that computes the sequence summary
+ * stats, see FittsTaskTwoEngine.setWorker), so the end of a sequence does not wait for them. The sd2 records are
+ * then written on the worker as well, after the block arrays, and the sinks are closed there.
+ */
+class FittsTaskTwoRecorder implements FittsTaskTwoEngineListener
+{
+	private final FittsTaskTwoDataSink sd1;
+	private final FittsTaskTwoDataSink sd2;
+	private final FittsTaskTwoTraceWriter traceWriter; // formats and writes the sd3 data (on its own thread)
+	private final String leadin; // App,Participant,Condition,Block,
+	private final StringBuilder sb;
+	private final Executor worker; // writes the sd1 and sd2 data (null = on the calling thread)
+
+	FittsTaskTwoRecorder(FittsTaskTwoConfiguration c, FittsTaskTwoDataSink sd1Arg, FittsTaskTwoDataSink sd2Arg,
+			FittsTaskTwoDataSink sd3) throws IOException
+	{
+		this(c, sd1Arg, sd2Arg, sd3, null);
+	}
+
+	/**
+	 * As above, but the sd1 data are written on the given executor, which must run its tasks in order on one thread.
+	 */
+	FittsTaskTwoRecorder(FittsTaskTwoConfiguration c, FittsTaskTwoDataSink sd1Arg, FittsTaskTwoDataSink sd2Arg,
+			FittsTaskTwoDataSink sd3, Executor workerArg) throws IOException
+	{
+		worker = workerArg;
+		sd1 = sd1Arg;
+		sd2 = sd2Arg;
+		leadin = "FittsTaskTwo" + "," + c.getParticipantCode() + "," + c.getConditionCode() + "," + c.getBlockCode()
+				+ ",";
+		sb = new StringBuilder();
+
+		// write header lines to data files (commit as well)
+
+		// sd1 header
+		String s = "App,Participant,Condition,Block,Trial," + FittsTaskTwoTrial.getTrialHeader() + "\n";
+		sd1.write(s);
+		sd1.commit();
+
+		// sd2 header
+		s = "App,Participant,Condition,Block," + FittsTaskTwoBlock.getBlockHeader() + "\n";
+		sd2.write(s);
+		sd2.commit();
+
+		// sd3 header
+		s = "TRACE DATA\n";
+		s += "App,Participant,Condition,Block,Sequence,A,W,Trial,from_x,from_y,to_x,to_y,{t_x_y}\n";
+		sd3.write(s);
+		sd3.commit();
+
+		traceWriter = new FittsTaskTwoTraceWriter(sd3, c.getParticipantCode(), c.getConditionCode(),
+				c.getBlockCode());
+	}
+
+	public void sequenceStarted(FittsTaskTwoEngine engine)
+	{
+	}
+
+	public void targetAdvanced(FittsTaskTwoEngine engine)
+	{
+	}
+
+	public void trialComplete(FittsTaskTwoEngine engine, FittsTaskTwoTrial t, FittsTaskTwoTraceRecord r)
+	{
+		traceWriter.write(r);
+	}
+
+	public void sequenceRepeated(FittsTaskTwoEngine engine, FittsTaskTwoSequence s)
+	{
+		traceWriter.discard();
+	}
+
+	// write trial data at end of sequence (and let the trace data for the sequence go to the sd3 file)
+	public void sequenceComplete(FittsTaskTwoEngine engine, final FittsTaskTwoSequence s) throws IOException
+	{
+		// the sd3 records are handed over in order on this thread (see sequenceRepeated), so commit them here
+		traceWriter.commit();
+
+		if (worker == null)
+		{
+			writeTrials(s);
+			return;
+		}
+		worker.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					writeTrials(s);
+				} catch (IOException e)
+				{
+					failed("I/O error writing to sd1 file");
+				}
+			}
+		});
+	}
+
+	// an I/O error on the worker: tell the user (on the Event Dispatch Thread), and quit
+	private static void failed(final String message)
+	{
+		SwingUtilities.invokeLater(new Runnable()
+		{
+			public void run()
+			{
+				JOptionPane.showMessageDialog(null, message, "I/O Error", JOptionPane.ERROR_MESSAGE);
+				System.exit(1);
+			}
+		});
+	}
+
+	private void writeTrials(FittsTaskTwoSequence s) throws IOException
+	{
+		for (int i = 0; i < s.getTrials(); ++i)
+		{
+			sb.setLength(0);
+			sb.append(leadin).append(s.getTrialData(i)).append('\n');
+			sd1.write(sb);
+		}
+		sd1.commit(); // one write for the whole sequence
+	}
+
+	/**
+	 * Write the sd1 and sd3 data again for a sequence that was completed in an earlier run of the session (see
+	 * FittsTaskTwoJournalReplay).
+	 */
+	public void replaySequence(FittsTaskTwoSequence s, FittsTaskTwoTraceRecord[] records) throws IOException
+	{
+		for (int i = 0; i < records.length; ++i)
+			traceWriter.write(records[i]);
+		sequenceComplete(null, s);
+	}
+
+	public void blockComplete(FittsTaskTwoEngine engine, final FittsTaskTwoBlock b) throws IOException
+	{
+		if (worker == null)
+		{
+			writeBlock(b);
+			return;
+		}
+		// after the sd1 data for the last sequence and the block arrays (the worker runs its tasks in order)
+		worker.execute(new Runnable()
+		{
+			public void run()
+			{
+				try
+				{
+					writeBlock(b);
+				} catch (IOException e)
+				{
+					failed("I/O error writing to sd2 file");
+				}
+			}
+		});
+	}
+
+	private void writeBlock(FittsTaskTwoBlock b) throws IOException
+	{
+		for (int i = 0; i < b.getSequences(); ++i)
+			sd2.write(leadin + b.getSequenceData(i) + "\n");
+		sd1.close();
+		sd2.close();
+		traceWriter.close();
+	}
+}
@@ -0,0 +1,458 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * <h1>FittsTaskTwoReplay</h1>
+ *
+ * <h3>Summary</h3>
+ *
+ * <ul>
+ * <li>Re-scores archived FittsTaskTwo sessions. The trace samples in an sd3 file are fed back through the trial,
+ * sequence, and block logic (FittsTaskTwoEngine) and the output writers (FittsTaskTwoRecorder), with no display and
+ * at full speed, and new sd1 and sd2 files are written. So a change to the scoring can be applied to the sessions
+ * already collected, without running the participants again.
+ * <p>
+ * <li>The sd3 file is written again as well, and compared with the original. If the engine is deterministic, the two
+ * are identical. If the session's sd1 file is there, the PT, ST, and MT of each trial are compared with it as well.
+ * <p>
+ * </ul>
+ *
+ * <h3>Running</h3>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoReplay [-c file] sd3file ...
+ * </pre>
+ *
+ * where
+ * <p>
+ *
+ * <pre>
+ *      -c = configuration file (default is 'FittsTaskTwo.cfg'), for the hysteresis and the gap threshold
+ *      sd3file = an sd3 file from FittsTaskTwo (any number)
+ * </pre>
+ *
+ * The output for F.sd3 is written to F-replay.sd1, F-replay.sd2, and F-replay.sd3. For example,
+ * <p>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoReplay FittsTaskTwo-P01-C01-B01.sd3 FittsTaskTwo-P01-C01-B02.sd3
+ *      FittsTaskTwo-P01-C01-B01.sd3: 6 sequences, 78 trials, sd3 identical, sd1 times identical
+ *      FittsTaskTwo-P01-C01-B02.sd3: 6 sequences, 78 trials, sd3 identical, sd1 times identical
+ *      2 files, 156 trials, 0.985 s (158 trials/s)
+ * </pre>
+ *
+ * The example files that come with FittsTaskTwo are a check of the replay (the sd1 file is found by replacing the
+ * last "sd3" in the name with "sd1"):
+ * <p>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoReplay FittsTaskTwo-sd3-example.txt
+ *      FittsTaskTwo-sd3-example.txt: 4 sequences, 52 trials, sd3 identical, sd1 times identical
+ * </pre>
+ *
+ * Most of the time for a few files is the start-up of the JVM; 100 sessions take about 7 s (1100 trials/s).
+ *
+ * <h3>What is Replayed</h3>
+ *
+ * The participant, condition, and block codes, the A and W conditions and their order, the number of targets, and the
+ * time base (ms or high-resolution) are all taken from the sd3 file. The centre of the layout (i.e., the size of the
+ * task panel) is the centre of the to points; the layout is checked against the from and to points of every trial.
+ * <p>
+ *
+ * For each trial, the samples are replayed as move events, except the press and the release of the button. The last
+ * sample is the release. The sd3 file does not mark the press, and the pointer may move with the button down, so the
+ * press is found with the ST of the trial in the sd1 file: it is the (first) sample at the time of the release less ST.
+ * If there is no sd1 file, or it does not match the sd3 file, or there is no sample at that time, the second-to-last
+ * sample is taken as the press, and the PT and ST of the trial (and of its sequence) are written as -1 (unknown). The
+ * trace is the same either way.
+ * <p>
+ *
+ * Some data are not in the sd3 file, so they are not the same as in the original sd1 and sd2 files: the onset
+ * latency (-1 = unknown), the coalesced events, dropped samples, and GC pauses (0), and the sequence repeat count (0).
+ * Only the sequences that were kept are in the sd3 file, so no sequence is repeated in the replay. The times in the sd3
+ * file are rounded (to the ms, or to the microsecond with the high-resolution clock), so the sample rate and intervals
+ * can differ from the original in the last digit. If the traces were decimated (see decimateDistance), only the samples
+ * kept are in the sd3 file: the sampling audit and the Raw column are for those.
+ */
+public class FittsTaskTwoReplay
+{
+	private static final int LEADIN = 12; // App,Participant,Condition,Block,Sequence,A,W,Trial,from_x,from_y,to_x,to_y
+	private static final long GAP = 1000000000L; // ns between the sequences (not in the sd3 file)
+	private static final int PT = 0; // the times of a trial in the sd1 file (ms)
+	private static final int ST = 1;
+	private static final int MT = 2;
+
+	private final FittsTaskTwoConfiguration c;
+	private int trials; // trials replayed (all files)
+	private String check; // the check against the sd1 file, for the last file replayed
+
+	FittsTaskTwoReplay(FittsTaskTwoConfiguration cArg)
+	{
+		c = cArg;
+	}
+
+	// a trial, as read from the sd3 file
+	private static class TraceTrial
+	{
+		String app; // App,Participant,Condition,Block
+		int sequence;
+		int a;
+		int w;
+		int trial;
+		int fromX;
+		int fromY;
+		int toX;
+		int toY;
+		FittsTaskTwoTrace samples;
+	}
+
+	/**
+	 * Replay an sd3 file, and write the sd1, sd2, and sd3 files for the replay. Returns true if the sd3 file written is
+	 * the same as the original.
+	 */
+	public boolean replay(String fileName) throws IOException
+	{
+		boolean[] highResolution = new boolean[1];
+		ArrayList<TraceTrial> list = read(fileName, highResolution);
+		if (list.isEmpty())
+			throw new IOException("No trace data");
+
+		// the block, as in the file
+		TraceTrial first = list.get(0);
+		String[] code = first.app.split(",");
+		int numberOfTargets = 0;
+		while (numberOfTargets < list.size() && list.get(numberOfTargets).sequence == first.sequence)
+			++numberOfTargets;
+		if (list.size() % numberOfTargets != 0)
+			throw new IOException("The sequences do not have the same number of trials");
+		int sequences = list.size() / numberOfTargets;
+		int[] a = distinct(list, true);
+		int[] w = distinct(list, false);
+		int[] sequenceOrder = new int[sequences];
+		for (int i = 0; i < sequences; ++i)
+		{
+			TraceTrial t = list.get(i * numberOfTargets);
+			sequenceOrder[i] = indexOf(a, t.a) * w.length + indexOf(w, t.w);
+		}
+
+		c.setParticipantCode(code[1]);
+		c.setConditionCode(code[2]);
+		c.setBlockCode(code[3]);
+		c.setNumberOfTrials(numberOfTargets);
+		c.setA(a);
+		c.setW(w);
+		c.setErrorThreshold(100); // only the sequences that were kept are in the file
+		c.setGcRepeat(false);
+
+		// the times of the trials in the session's sd1 file, for the presses (null = unknown)
+		double[][] times = null;
+		try
+		{
+			times = readTimes(getSd1FileName(fileName), list);
+		} catch (IOException e)
+		{
+			check = "PT/ST unknown (" + e.getMessage() + ")";
+		}
+		long tolerance = highResolution[0] ? 1000 : 0; // ns (the times in the files are rounded)
+
+		String out = fileName.endsWith(".sd3") ? fileName.substring(0, fileName.length() - 4) : fileName;
+		out += "-replay";
+		FittsTaskTwoBlock block = new FittsTaskTwoBlock(sequences, numberOfTargets, a, w, sequenceOrder);
+		FittsTaskTwoEngine engine = new FittsTaskTwoEngine(c, block, new FittsTaskTwoClock(highResolution[0]));
+		engine.addListener(new FittsTaskTwoRecorder(c, new FittsTaskTwoFileSink(out + ".sd1", c.getCommitSize(),
+				c.getCommitInterval()), new FittsTaskTwoFileSink(out + ".sd2", c.getCommitSize(),
+				c.getCommitInterval()), new FittsTaskTwoFileSink(out + ".sd3", c.getCommitSize(),
+				c.getCommitInterval())));
+
+		// the panel size that puts the layout where it was
+		double x = 0.0;
+		double y = 0.0;
+		for (TraceTrial t : list)
+		{
+			x += t.toX;
+			y += t.toY;
+		}
+		engine.setSize(2 * (int)Math.round(x / list.size()), 2 * (int)Math.round(y / list.size()));
+		engine.start();
+
+		long time = 0; // ns
+		for (int i = 0; i < list.size(); ++i)
+		{
+			TraceTrial t = list.get(i);
+			FittsTaskTwoLayout layout = engine.getLayout();
+			if (engine.getSequenceNumber() != t.sequence || engine.getTrial() != (t.trial == 1 ? 0 : t.trial))
+				throw new IOException("Sequence " + t.sequence + ", trial " + t.trial + " is out of order");
+			if (layout.getFromX(t.trial) != t.fromX || layout.getFromY(t.trial) != t.fromY
+					|| layout.getToX(t.trial) != t.toX || layout.getToY(t.trial) != t.toY)
+				throw new IOException("The layout does not match the trace data (sequence " + t.sequence + ", trial "
+						+ t.trial + ")");
+
+			// the click that begins the sequence, in the centre of the first target
+			if (t.trial == 1)
+			{
+				time += GAP;
+				engine.release(time, t.fromX, t.fromY);
+			}
+
+			// moves and the press (the first sample of trials 2, 3, ... is the last release, added by the engine)
+			FittsTaskTwoTrace s = t.samples;
+			int n = s.size();
+			if (n < 2)
+				throw new IOException("Sequence " + t.sequence + ", trial " + t.trial + " has too few samples");
+			int from = t.trial == 1 ? 0 : 1;
+			int press = -1;
+			if (times != null && times[i][ST] >= 0)
+				press = find(s, from, n - 2, s.getT(n - 1) - Math.round(times[i][ST] * 1e6), tolerance);
+			for (int j = from; j < n - 1; ++j)
+			{
+				if (j == press)
+					engine.press(time + s.getT(j), s.getX(j), s.getY(j));
+				else if (press < 0 && j == n - 2)
+					engine.pressUnknown(time + s.getT(j), s.getX(j), s.getY(j));
+				else
+					engine.move(time + s.getT(j), s.getX(j), s.getY(j));
+			}
+			engine.release(time + s.getT(n - 1), s.getX(n - 1), s.getY(n - 1));
+			time += s.getT(n - 1);
+			++trials;
+		}
+		if (!engine.isFinished())
+			throw new IOException("The block is not complete");
+
+		// the times of the trials, as in the sd1 file
+		if (times != null)
+		{
+			FittsTaskTwoClock clock = engine.getClock();
+			int different = 0;
+			for (int i = 0; i < list.size(); ++i)
+			{
+				FittsTaskTwoTrial t = block.getSequence(i / numberOfTargets).getTrial(i % numberOfTargets);
+				double slack = clock.toMillis(2 * tolerance);
+				if (Math.abs(t.getPT() - times[i][PT]) > slack || Math.abs(t.getST() - times[i][ST]) > slack
+						|| Math.abs(t.mt - times[i][MT]) > slack)
+					++different;
+			}
+			check = different == 0 ? "sd1 times identical" : "sd1 times DIFFERENT for " + different + " trials";
+		}
+
+		return Arrays.equals(Files.readAllBytes(Paths.get(fileName)), Files.readAllBytes(Paths.get(out + ".sd3")));
+	}
+
+	public int getTrials()
+	{
+		return trials;
+	}
+
+	// the result of the check against the sd1 file, for the last file replayed
+	public String getCheck()
+	{
+		return check;
+	}
+
+	// the session's sd1 file: the last "sd3" in the name becomes "sd1" (F.sd3, or FittsTaskTwo-sd3-example.txt)
+	private static String getSd1FileName(String fileName)
+	{
+		int i = fileName.lastIndexOf("sd3");
+		return i < 0 ? null : fileName.substring(0, i) + "sd1" + fileName.substring(i + 3);
+	}
+
+	// the first sample from i to last (inclusive) within tolerance of time t, or -1 if there is none
+	private static int find(FittsTaskTwoTrace s, int i, int last, long t, long tolerance)
+	{
+		for (; i <= last; ++i)
+			if (Math.abs(s.getT(i) - t) <= tolerance)
+				return i;
+		return -1;
+	}
+
+	/*
+	 * Read the PT, ST, and MT of each trial (ms) from an sd1 file, in the order of the trials in the sd3 file. The
+	 * files must be for the same trials.
+	 */
+	private static double[][] readTimes(String fileName, ArrayList<TraceTrial> list) throws IOException
+	{
+		if (fileName == null || !new File(fileName).exists())
+			throw new IOException("no sd1 file");
+		double[][] times = new double[list.size()][];
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try
+		{
+			String line = in.readLine();
+			String[] header = line != null ? line.split(",") : new String[0];
+			int trial = Arrays.asList(header).indexOf("Trial");
+			int a = Arrays.asList(header).indexOf("A");
+			int w = Arrays.asList(header).indexOf("W");
+			int pt = Arrays.asList(header).indexOf("PT(ms)");
+			int st = Arrays.asList(header).indexOf("ST(ms)");
+			int mt = Arrays.asList(header).indexOf("MT(ms)");
+			if (trial < 0 || a < 0 || w < 0 || pt < 0 || st < 0 || mt < 0)
+				throw new IOException("not an sd1 file: " + fileName);
+			int i = 0;
+			while ((line = in.readLine()) != null)
+			{
+				if (line.length() == 0)
+					continue;
+				String[] column = line.split(",");
+				if (i == list.size())
+					throw new IOException("more trials in " + fileName);
+				TraceTrial t = list.get(i);
+				if (column.length < header.length || !line.startsWith(t.app + ",")
+						|| Integer.parseInt(column[trial]) != t.trial - 1 || Double.parseDouble(column[a]) != t.a
+						|| Double.parseDouble(column[w]) != t.w)
+					throw new IOException(fileName + " does not match (sequence " + t.sequence + ", trial " + t.trial
+							+ ")");
+				times[i++] = new double[] { Double.parseDouble(column[pt]), Double.parseDouble(column[st]),
+						Double.parseDouble(column[mt]) };
+			}
+			if (i < list.size())
+				throw new IOException("fewer trials in " + fileName);
+		} catch (NumberFormatException e)
+		{
+			throw new IOException("bad data in " + fileName + " (" + e.getMessage() + ")");
+		} finally
+		{
+			in.close();
+		}
+		return times;
+	}
+
+	// read the trials (three lines each: t=, x=, y=) from an sd3 file
+	private static ArrayList<TraceTrial> read(String fileName, boolean[] highResolution) throws IOException
+	{
+		ArrayList<TraceTrial> list = new ArrayList<TraceTrial>();
+		BufferedReader in = new BufferedReader(new FileReader(fileName));
+		try
+		{
+			in.readLine(); // TRACE DATA
+			in.readLine(); // header
+			String line;
+			while ((line = in.readLine()) != null)
+			{
+				if (line.length() == 0)
+					continue;
+				String[] t = line.split(",");
+				String[] x = in.readLine().split(",");
+				String[] y = in.readLine().split(",");
+				if (t.length < LEADIN + 1 || !t[LEADIN].equals("t=") || !x[LEADIN].equals("x=")
+						|| !y[LEADIN].equals("y=") || t.length != x.length || t.length != y.length)
+					throw new IOException("Bad trace data (sequence " + t[4] + ", trial " + t[7] + ")");
+
+				TraceTrial tt = new TraceTrial();
+				tt.app = t[0] + "," + t[1] + "," + t[2] + "," + t[3];
+				tt.sequence = Integer.parseInt(t[4]);
+				tt.a = Integer.parseInt(t[5]);
+				tt.w = Integer.parseInt(t[6]);
+				tt.trial = Integer.parseInt(t[7]);
+				tt.fromX = Integer.parseInt(t[8]);
+				tt.fromY = Integer.parseInt(t[9]);
+				tt.toX = Integer.parseInt(t[10]);
+				tt.toY = Integer.parseInt(t[11]);
+				tt.samples = new FittsTaskTwoTrace(t.length - LEADIN - 1);
+				for (int i = LEADIN + 1; i < t.length; ++i)
+				{
+					highResolution[0] |= t[i].indexOf('.') >= 0;
+					tt.samples.add(Math.round(Double.parseDouble(t[i]) * 1e6), Integer.parseInt(x[i]),
+							Integer.parseInt(y[i]));
+				}
+				list.add(tt);
+			}
+		} catch (NumberFormatException e)
+		{
+			throw new IOException("Bad trace data (" + e.getMessage() + ")");
+		} catch (NullPointerException e)
+		{
+			throw new IOException("Trace data cut short");
+		} finally
+		{
+			in.close();
+		}
+		return list;
+	}
+
+	// the A (or W) conditions, in the order they first appear
+	private static int[] distinct(ArrayList<TraceTrial> list, boolean amplitude)
+	{
+		int[] values = new int[0];
+		for (TraceTrial t : list)
+		{
+			int v = amplitude ? t.a : t.w;
+			if (indexOf(values, v) < 0)
+			{
+				values = Arrays.copyOf(values, values.length + 1);
+				values[values.length - 1] = v;
+			}
+		}
+		return values;
+	}
+
+	private static int indexOf(int[] values, int v)
+	{
+		for (int i = 0; i < values.length; ++i)
+			if (values[i] == v)
+				return i;
+		return -1;
+	}
+
+	// -----------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException
+	{
+		String cfgFile = null;
+		ArrayList<String> files = new ArrayList<String>();
+		for (int i = 0; i < args.length; ++i)
+		{
+			if (args[i].equals("-c") && i + 1 < args.length)
+				cfgFile = args[++i];
+			else if (!args[i].startsWith("-"))
+				files.add(args[i]);
+			else
+				usage();
+		}
+		if (files.isEmpty())
+			usage();
+
+		FittsTaskTwoConfiguration c = FittsTaskTwo.loadConfigurationData(cfgFile);
+		if (c == null)
+			System.exit(1);
+		FittsTaskTwoReplay replay = new FittsTaskTwoReplay(c);
+		long start = System.nanoTime();
+		int failed = 0;
+		int different = 0;
+		for (String f : files)
+		{
+			int trials0 = replay.getTrials();
+			try
+			{
+				boolean same = replay.replay(f);
+				if (!same)
+					++different;
+				System.out.println(f + ": " + (replay.getTrials() - trials0) / Math.max(replay.c.getNumberOfTargets(), 1)
+						+ " sequences, " + (replay.getTrials() - trials0) + " trials, sd3 "
+						+ (same ? "identical" : "DIFFERENT") + ", " + replay.getCheck());
+			} catch (IOException e)
+			{
+				++failed;
+				System.out.println(f + ": " + e.getMessage());
+			}
+		}
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.printf("%d files, %d trials, %.3f s (%.0f trials/s)%s%s\n", files.size(), replay.getTrials(),
+				elapsed, replay.getTrials() / elapsed, failed > 0 ? ", " + failed + " failed" : "",
+				different > 0 ? ", " + different + " with a different sd3" : "");
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: java FittsTaskTwoReplay [-c file] sd3file ...");
+		System.out.println();
+		System.out.println("   where -c = configuration file (default is 'FittsTaskTwo.cfg')");
+		System.out.println("         sd3file = an sd3 file from FittsTaskTwo (any number)");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,86 @@
+// ---------------------------------
+// F I T T S R U N N I N G S T A T S
+// ---------------------------------
+
+/*
+ * The throughput measures for the trials of a sequence so far, updated as each trial is complete. The measures are the
+ * same as computed by the Throughput object at the end of the sequence (serial responses, two dimensions), but each
+ * trial is added in constant time: the SD of dx is kept with Welford's method (a running mean and sum of squared
+ * differences), and Ae, MT with running sums. The trials are not kept, so nothing is scanned again.
+ *
+ * As with Throughput, the Ae for a trial is adjusted by the dx of the previous trial (serial responses), We = 4.133 x
+ * SDx, IDe = log2(Ae / We + 1), and TP = IDe / MT. We, IDe, and TP are NaN until there are two trials.
+ */
+class FittsTaskTwoRunningStats
+{
+	private int n; // trials
+	private double aeSum;
+	private double mtSum; // ms
+	private double dxMean; // running mean of dx
+	private double dxM2; // running sum of squared differences from the mean of dx
+	private double lastDx; // dx of the previous trial (for Ae)
+
+	FittsTaskTwoRunningStats()
+	{
+		clear();
+	}
+
+	// start again (e.g., for a new sequence)
+	public void clear()
+	{
+		n = 0;
+		aeSum = 0.0;
+		mtSum = 0.0;
+		dxMean = 0.0;
+		dxM2 = 0.0;
+		lastDx = 0.0;
+	}
+
+	public void add(FittsTaskTwoTrial t)
+	{
+		add(t.getAe(), t.getDx(), t.mt);
+	}
+
+	// as above, from the Ae, dx, and MT (ms) of the trial (e.g., read from an sd1 line)
+	public void add(double ae, double dx, double mt)
+	{
+		aeSum += n > 0 ? ae + lastDx : ae;
+		mtSum += mt;
+		lastDx = dx;
+
+		++n;
+		double delta = dx - dxMean;
+		dxMean += delta / n;
+		dxM2 += delta * (dx - dxMean);
+	}
+
+	public int getTrials()
+	{
+		return n;
+	}
+
+	public double getAe()
+	{
+		return n > 0 ? aeSum / n : Double.NaN;
+	}
+
+	public double getWe()
+	{
+		return n > 1 ? Throughput.SQRT_2_PI_E * Math.sqrt(dxM2 / (n - 1)) : Double.NaN;
+	}
+
+	public double getIDe() // bits
+	{
+		return Math.log(getAe() / getWe() + 1.0) / Math.log(2.0);
+	}
+
+	public double getMT() // ms
+	{
+		return n > 0 ? mtSum / n : Double.NaN;
+	}
+
+	public double getTP() // bits/s
+	{
+		return getIDe() / (getMT() / 1000.0);
+	}
+}
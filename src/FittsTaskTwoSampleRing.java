@@ -0,0 +1,111 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+// ------------------------------
+// F I T T S S A M P L E R I N G
+// ------------------------------
+
+/*
+ * A lock-free ring buffer of (t, x, y) samples, for one producer thread and one consumer thread. The producer only
+ * advances the head and the consumer only advances the tail, so neither side ever waits for the other. If the ring
+ * is full, the new sample is dropped (and counted).
+ *
+ * The consumer can also look at the samples before it removes them (peek), e.g., to publish them as they come in.
+ */
+class FittsTaskTwoSampleRing
+{
+	private final long[] t;
+	private final int[] x;
+	private final int[] y;
+	private final int mask;
+	private final AtomicLong head; // next slot to write (producer)
+	private final AtomicLong tail; // next slot to read (consumer)
+	private volatile long dropped; // written by the producer only
+	private long peeked; // next slot for peek (consumer)
+
+	// capacity is rounded up to a power of 2
+	FittsTaskTwoSampleRing(int capacityArg)
+	{
+		int capacity = Integer.highestOneBit(Math.max(capacityArg, 2) - 1) << 1;
+		t = new long[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		mask = capacity - 1;
+		head = new AtomicLong();
+		tail = new AtomicLong();
+		dropped = 0;
+	}
+
+	// called by the producer
+	public boolean offer(long tArg, int xArg, int yArg)
+	{
+		long h = head.get();
+		if (h - tail.get() > mask)
+		{
+			++dropped;
+			return false;
+		}
+		int i = (int)h & mask;
+		t[i] = tArg;
+		x[i] = xArg;
+		y[i] = yArg;
+		head.lazySet(h + 1); // publish the sample
+		return true;
+	}
+
+	/**
+	 * Called by the consumer. Remove the samples with timestamps up to (and including) 'until'. If trace is not null,
+	 * the samples are added to it, with t relative to 'origin' and x,y relative to xOffset,yOffset. Returns the number
+	 * of samples removed.
+	 */
+	public int drain(long until, FittsTaskTwoTrace trace, long origin, int xOffset, int yOffset)
+	{
+		long tl = tail.get();
+		long h = head.get();
+		int n = 0;
+		while (tl < h)
+		{
+			int i = (int)tl & mask;
+			if (t[i] > until)
+				break;
+			if (trace != null)
+				trace.addMove(t[i] - origin, x[i] - xOffset, y[i] - yOffset);
+			++tl;
+			++n;
+		}
+		tail.lazySet(tl); // release the slots
+		return n;
+	}
+
+	/**
+	 * Called by the consumer. Add the samples with timestamps up to (and including) 'until' that were not added by an
+	 * earlier peek (or removed by drain) to the trace, as drain does, but leave them in the ring. None are decimated.
+	 * Returns the number of samples added.
+	 */
+	public int peek(long until, FittsTaskTwoTrace trace, long origin, int xOffset, int yOffset)
+	{
+		long p = Math.max(peeked, tail.get());
+		long h = head.get();
+		int n = 0;
+		while (p < h)
+		{
+			int i = (int)p & mask;
+			if (t[i] > until)
+				break;
+			trace.add(t[i] - origin, x[i] - xOffset, y[i] - yOffset);
+			++p;
+			++n;
+		}
+		peeked = p;
+		return n;
+	}
+
+	public int getCapacity()
+	{
+		return mask + 1;
+	}
+
+	public long getDropped()
+	{
+		return dropped;
+	}
+}
@@ -0,0 +1,67 @@
+import java.awt.MouseInfo;
+import java.awt.Point;
+import java.awt.PointerInfo;
+import java.util.concurrent.locks.LockSupport;
+
+// -----------------------
+// F I T T S S A M P L E R
+// -----------------------
+
+/*
+ * Polls the pointer position at a fixed rate on a dedicated (high priority) thread and puts the samples (screen
+ * coordinates) in a FittsTaskTwoSampleRing. Since AWT coalesces MOUSE_MOVED events when the Event Dispatch Thread is
+ * busy, traces built from mouse events get sparser as the UI gets busier. Traces built from these samples do not.
+ * Samples are timestamped with the engine's clock (FittsTaskTwoClock.now), so they are on the same time base as the
+ * mouse events.
+ */
+class FittsTaskTwoSampler implements Runnable
+{
+	private final FittsTaskTwoSampleRing ring;
+	private final long period; // ns
+	private final FittsTaskTwoClock clock;
+	private final Thread thread;
+	private volatile boolean running;
+
+	FittsTaskTwoSampler(FittsTaskTwoSampleRing ringArg, int rate, FittsTaskTwoClock clockArg)
+	{
+		ring = ringArg;
+		clock = clockArg;
+		period = 1000000000L / rate;
+		thread = new Thread(this, "FittsTaskTwo sampler");
+		thread.setDaemon(true);
+		thread.setPriority(Thread.MAX_PRIORITY);
+	}
+
+	public void start()
+	{
+		running = true;
+		thread.start();
+	}
+
+	public void stop()
+	{
+		running = false;
+	}
+
+	public void run()
+	{
+		long next = System.nanoTime();
+		while (running)
+		{
+			PointerInfo pi = MouseInfo.getPointerInfo();
+			if (pi != null) // null if there is no mouse (or it is on another device)
+			{
+				Point p = pi.getLocation();
+				ring.offer(clock.now(), p.x, p.y);
+			}
+
+			// fixed rate (if a poll is late, the next one is not)
+			next += period;
+			long wait = next - System.nanoTime();
+			if (wait > 0)
+				LockSupport.parkNanos(wait);
+			else if (wait < -period)
+				next = System.nanoTime();
+		}
+	}
+}
@@ -1,4 +1,9 @@
 import java.awt.geom.Point2D;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 // -------------------------
 // F I T T S S E Q U E N C E
@@ -11,8 +16,8 @@ class FittsTaskTwoSequence
 	private int a;
 	private int w;
 	private int sequenceRepeatCount;
-	private double pt; // pointing time
-	private double st; // selection time
+	private double pt; // pointing time (-1 = unknown, for any trial)
+	private double st; // selection time (-1 = unknown, for any trial)
 
 	/*
 	 * The accuracy measures are calculated and stored in each trial. Here, we are concerned with the means for the
@@ -26,12 +31,27 @@ class FittsTaskTwoSequence
 	private double me; // movement error
 	private double mo; // movement offset
 
+	// the sampling audit: the mean rate, interval, and SD of the trials that have them (NaN if none does), the longest
+	// interval, and the total gaps
+	private double rate;
+	private double interval;
+	private double intervalSD;
+	private double intervalMax;
+	private int gaps;
+	private double kept; // samples kept in the traces (% of the samples captured)
+
 	/*
 	 * The Throughput object will provide us with the throughput for the sequence and other measures (e.g., ID,
 	 * IDe, error rate, etc).
 	 */
 	private Throughput tp;
 
+	/*
+	 * If the summary stats are computed in the background (see below), this is the computation. The getters that need
+	 * the stats wait for it.
+	 */
+	private FutureTask<Void> stats;
+
 	FittsTaskTwoSequence(int numberOfTargetsArg, int aArg, int wArg)
 	{
 		tp = new Throughput();
@@ -82,6 +102,7 @@ class FittsTaskTwoSequence
 
 	public double getID() // index of difficulty (bits)
 	{
+		awaitStats();
 		// need to compute the mean, because A is different from trial to trial
 		double id = 0.0;
 		for (int i = 0; i < ft.length; ++i)
@@ -92,19 +113,99 @@ class FittsTaskTwoSequence
 
 	public double getIDe() // effective index of difficulty (bits)
 	{
+		awaitStats();
 		return tp.getIDe(); 
 	}
 
 	public double getTP() // throughput (bits/s)
 	{
+		awaitStats();
 		return tp.getThroughput();
 	}
 
+	/**
+	 * Compute the summary stats on the given executor. The executor must run its tasks in order on one thread (e.g.,
+	 * Executors.newSingleThreadExecutor), so a task submitted after this one sees the stats. The trials must not change
+	 * until the stats are computed.
+	 */
+	public void computeSequenceSummaryStats(Executor worker)
+	{
+		stats = new FutureTask<Void>(new Runnable()
+		{
+			public void run()
+			{
+				computeSequenceSummaryStats();
+			}
+		}, null);
+		worker.execute(stats);
+	}
+
+	// wait for the summary stats, if they are computed in the background
+	private void awaitStats()
+	{
+		if (stats != null)
+			await(stats);
+	}
+
+	/*
+	 * Wait for a computation in the background. An interrupt does not end the wait (the results would be read while
+	 * they are being written); the interrupt is kept for the caller.
+	 */
+	static void await(Future<?> f)
+	{
+		boolean interrupted = false;
+		try
+		{
+			while (true)
+			{
+				try
+				{
+					f.get();
+					return;
+				} catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e)
+		{
+			throw new RuntimeException(e.getCause());
+		} finally
+		{
+			if (interrupted)
+				Thread.currentThread().interrupt();
+		}
+	}
+
+	/*
+	 * The number of misses and the error rate (%), straight from the trials. These are the same as computed by the
+	 * Throughput object (a miss is a selection farther than W/2 from the centre of the target), but they do not need
+	 * the summary stats, so the engine can decide right away if the sequence is repeated.
+	 */
+	public int getMisses()
+	{
+		int count = 0;
+		for (int i = 0; i < ft.length; ++i)
+			if (Math.hypot(ft[i].xSelect - ft[i].xTo, ft[i].ySelect - ft[i].yTo) > w / 2.0)
+				++count;
+		return count;
+	}
+
+	public double getErrorRate()
+	{
+		return (double)getMisses() / ft.length * 100.0;
+	}
+
 	public void computeSequenceSummaryStats()
 	{
+		// the accuracy measures of the trials (from their traces)
+		for (int i = 0; i < ft.length; ++i)
+			if (ft[i].getTrace() != null)
+				ft[i].computeAccuracyMeasures();
+
 		/*
-		 * The accuracy measures are stored in the AccuracyMeasures object in the FittsTaskTwoTrial instance. Here, we
-		 * are computing the mean of the measures for the sequence. We are also computing the mean of the positioning
+		 * The accuracy measures are stored in the FittsTaskTwoTrial instance. Here, we are computing the mean of the
+		 * measures for the sequence. We are also computing the mean of the positioning
 		 * time (pt) and selection time (st) values, since these are not handled in the Throughput object.
 		 */
 		pt = 0.0;
@@ -116,6 +217,17 @@ class FittsTaskTwoSequence
 		mv = 0.0;
 		me = 0.0;
 		mo = 0.0;
+		rate = 0.0;
+		interval = 0.0;
+		intervalSD = 0.0;
+		intervalMax = 0.0;
+		gaps = 0;
+		int raw = 0;
+		int keptSamples = 0;
+		// a trial with too few samples has no rate, interval, or SD (NaN, see FittsTaskTwoTrace), so it is left out
+		int rates = 0;
+		int intervals = 0;
+		int intervalSDs = 0;
 		for (int i = 0; i < ft.length; ++i)
 		{
 			pt += ft[i].getPT();
@@ -127,6 +239,25 @@ class FittsTaskTwoSequence
 			mv += ft[i].getMV();
 			me += ft[i].getME();
 			mo += ft[i].getMO();
+			if (!Double.isNaN(ft[i].getRate()))
+			{
+				rate += ft[i].getRate();
+				++rates;
+			}
+			if (!Double.isNaN(ft[i].getInterval()))
+			{
+				interval += ft[i].getInterval();
+				++intervals;
+			}
+			if (!Double.isNaN(ft[i].getIntervalSD()))
+			{
+				intervalSD += ft[i].getIntervalSD();
+				++intervalSDs;
+			}
+			intervalMax = Math.max(intervalMax, ft[i].getIntervalMax());
+			gaps += ft[i].getGaps();
+			raw += ft[i].getRaw();
+			keptSamples += ft[i].getKept();
 		}
 		pt /= ft.length;
 		st /= ft.length;
@@ -137,6 +268,16 @@ class FittsTaskTwoSequence
 		mv /= ft.length;
 		me /= ft.length;
 		mo /= ft.length;
+		rate = rates > 0 ? rate / rates : Double.NaN;
+		interval = intervals > 0 ? interval / intervals : Double.NaN;
+		intervalSD = intervalSDs > 0 ? intervalSD / intervalSDs : Double.NaN;
+		kept = raw > 0 ? 100.0 * keptSamples / raw : Double.NaN;
+		for (int i = 0; i < ft.length; ++i)
+			if (ft[i].getST() < 0) // the time of the press is not known (see FittsTaskTwoEngine.pressUnknown)
+			{
+				pt = -1;
+				st = -1;
+			}
 
 		/*
 		 * Prepare and pass on the necessary data to the Throughput object. We'll let the Throughput object take of
@@ -151,7 +292,7 @@ class FittsTaskTwoSequence
 			from[i] = new Point2D.Double(ft[i].xFrom, ft[i].yFrom);
 			to[i] = new Point2D.Double(ft[i].xTo, ft[i].yTo);
 			select[i] = new Point2D.Double(ft[i].xSelect, ft[i].ySelect);
-			mt[i] = (double)ft[i].mt;
+			mt[i] = ft[i].mt;
 		}
 
 		// OK, let the Throughput object work its magic!
@@ -160,84 +301,137 @@ class FittsTaskTwoSequence
 
 	public double getER()
 	{
+		awaitStats();
 		return tp.getErrorRate();
 	}
 
 	public int getA()
 	{
+		awaitStats();
 		return (int)Math.round(tp.getA());
 	}
 
 	public int getW()
 	{
+		awaitStats();
 		return (int)Math.round(tp.getW());
 	}
 
 	public double getTotalErrors()
 	{
+		awaitStats();
 		return tp.getMisses();
 	}
 
 	public double getAe()
 	{
+		awaitStats();
 		return tp.getAe();
 	}
 
 	public double getWe()
 	{
+		awaitStats();
 		return tp.getWe();
 	}
 
 	public double getPT()
 	{
+		awaitStats();
 		return pt;
 	}
 
 	public double getST()
 	{
+		awaitStats();
 		return st;
 	}
 
 	public double getMT()
 	{
+		awaitStats();
 		return tp.getMT();
 	}
 
 	public double getTRE()
 	{
+		awaitStats();
 		return tre;
 	}
 
 	public double getTAC()
 	{
+		awaitStats();
 		return tac;
 	}
 
 	public double getMDC()
 	{
+		awaitStats();
 		return mdc;
 	}
 
 	public double getODC()
 	{
+		awaitStats();
 		return odc;
 	}
 
 	public double getMV()
 	{
+		awaitStats();
 		return mv;
 	}
 
 	public double getME()
 	{
+		awaitStats();
 		return me;
 	}
 
 	public double getMO()
 	{
+		awaitStats();
 		return mo;
 	}
 
+	// the sampling audit (see FittsTaskTwoTrace)
+	public double getRate() // Hz
+	{
+		awaitStats();
+		return rate;
+	}
+
+	public double getInterval() // ms
+	{
+		awaitStats();
+		return interval;
+	}
+
+	public double getIntervalSD() // ms
+	{
+		awaitStats();
+		return intervalSD;
+	}
+
+	public double getIntervalMax() // ms
+	{
+		awaitStats();
+		return intervalMax;
+	}
+
+	public int getGaps()
+	{
+		awaitStats();
+		return gaps;
+	}
+
+	public double getKept() // %
+	{
+		awaitStats();
+		return kept;
+	}
+
 	// this is the data, as written to the .sd2 file
 	public String getSequenceData()
 	{
@@ -245,7 +439,9 @@ class FittsTaskTwoSequence
 				+ this.getID() + "," + this.getAe() + "," + this.getWe() + "," + this.getIDe() + "," + this.getPT()
 				+ "," + this.getST() + "," + this.getMT() + "," + this.getER() + "," + this.getTP() + ","
 				+ this.getTRE() + "," + this.getTAC() + "," + this.getMDC() + "," + this.getODC() + "," + this.getMV()
-				+ "," + this.getME() + "," + this.getMO();
+				+ "," + this.getME() + "," + this.getMO() + ","
+				+ String.format(Locale.ROOT, "%.1f,%.3f,%.3f,%.3f", getRate(), getInterval(), getIntervalSD(),
+						getIntervalMax()) + "," + getGaps() + "," + String.format(Locale.ROOT, "%.1f", getKept());
 	}
 
 	public String getTrialData(int n)
@@ -255,12 +451,14 @@ class FittsTaskTwoSequence
 
 	public static String getSequenceHeader()
 	{
-		return "SRC,Trials,A,W,ID,Ae,We,IDe(bits),PT(ms),ST(ms),MT(ms),ER(%),TP(bps)," + "TRE,TAC,MDC,ODC,MV,ME,MO";
+		return "SRC,Trials,A,W,ID,Ae,We,IDe(bits),PT(ms),ST(ms),MT(ms),ER(%),TP(bps)," + "TRE,TAC,MDC,ODC,MV,ME,MO,"
+				+ "Rate(Hz),Interval(ms),IntervalSD(ms),IntervalMax(ms),Gaps,Kept(%)";
 	}
 
 	// this is the data, as presented in the popup window at the end of a sequence
 	public String getSequenceSummary()
 	{
+		awaitStats();
 		return "TASK CONDITIONS:\n" + String.format("   Trials = %d\n", tp.getNumberOfTrials())
 				+ String.format("   A = %1.1f\n", tp.getA()) + String.format("   W = %1.1f\n", tp.getW())
 				+ String.format("   ID = %1.1f bits\n", tp.getID()) + "MOVEMENT BEHAVIOUR:\n"
@@ -275,6 +473,12 @@ class FittsTaskTwoSequence
 
 	public String getRepeatSequence()
 	{
-		return "OOPS!!!\n" + "Too many errors: " + tp.getMisses() + "\n" + "Please Repeat Sequence";
+		return "OOPS!!!\n" + "Too many errors: " + getMisses() + "\n" + "Please Repeat Sequence";
+	}
+
+	// as above, but the sequence is repeated because the computer paused during a trial (garbage collection)
+	public String getGcRepeatSequence()
+	{
+		return "OOPS!!!\n" + "System pause during sequence\n" + "Please Repeat Sequence";
 	}
 }
@@ -0,0 +1,362 @@
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+/**
+ * <h1>FittsTaskTwoSimulator</h1>
+ *
+ * <h3>Summary</h3>
+ *
+ * <ul>
+ * <li>Load driver for FittsTaskTwo. A simulated participant does the task, with no display and no human clicking.
+ * <p>
+ * <li>The simulated participant's movements are driven through the same trial, sequence, and block logic
+ * (FittsTaskTwoEngine) and the same output writers (FittsTaskTwoRecorder) as the real task. The output goes to
+ * counting sinks, so the output size is reported but no files are written.
+ * <p>
+ * <li>End-to-end throughput (trials and events per second of processing), allocation, garbage collection, and output
+ * size are reported at the end of the run.
+ * <p>
+ * </ul>
+ *
+ * <h3>The Simulated Participant</h3>
+ *
+ * Each movement follows a minimum-jerk trajectory (Flash and Hogan, 1985) from the current pointer position to an
+ * endpoint near the centre of the active target. The movement time follows Fitts' law:
+ * <p>
+ *
+ * <pre>
+ *      MT = a + b * log2(D / W + 1)
+ * </pre>
+ *
+ * with a = 100 ms, b = 150 ms/bit, and D = distance to the target. The pointer is sampled at the device poll rate
+ * (each sample is a move event), with Gaussian noise added to the sampled positions. For a hit, the endpoint is drawn
+ * from a bivariate normal distribution (SD = W / 4.133) around the target centre, and limited to the target. With
+ * probability errorRate, the endpoint is placed just outside the target (and outside the hysteresis zone), i.e., a
+ * miss. The button is held for 80-120 ms at the endpoint (no movement). Sequences with an error rate above the
+ * threshold in the configuration file are repeated, as with a real participant.
+ * <p>
+ *
+ * <h3>Running</h3>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoSimulator [file] [-b blocks] [-r rate] [-n noise] [-e errorRate] [-s seed]
+ *                                  [-c collector]
+ * </pre>
+ *
+ * where
+ * <p>
+ *
+ * <pre>
+ *      file = configuration file (default is 'FittsTaskTwo.cfg')
+ *      -b = number of blocks (default 1, each block has the A x W conditions in the configuration file)
+ *      -r = device poll rate (Hz, default 125)
+ *      -n = SD of the noise added to the pointer samples (pixels, default 0.5)
+ *      -e = probability of a miss (default 0.04)
+ *      -s = seed for the random number generator (default 1)
+ *      -c = stream the results to a FittsTaskTwoCollector at host:port (the station is "sim" + seed)
+ * </pre>
+ *
+ * For example,
+ * <p>
+ *
+ * <pre>
+ *      PROMPT&gt;java FittsTaskTwoSimulator FittsTaskTwo.cfg -b 200 -r 1000
+ *      blocks=200 sequences=1200 trials=15600 events=8814319
+ *      elapsed=11.787 s, 1323 trials/s, 747772 events/s
+ *      allocated=3439015864 bytes (220450 bytes/trial, driver thread)
+ *      traces=218742 bytes/block (5.2 bytes/sample, kept for the block)
+ *      gc=133 collections, 65 ms
+ *      sd1=2582084 chars, sd2=388868 chars, sd3=101663026 chars
+ * </pre>
+ *
+ * Allocation is measured for the driver thread (the thread that runs the engine). The sd3 data are formatted on the
+ * trace writer's own thread and are not included. The traces are the trace records kept in the trials of a block
+ * (see FittsTaskTwoTraceRecord).
+ * <p>
+ */
+public class FittsTaskTwoSimulator
+{
+	// Fitts' law coefficients for the simulated participant
+	private static final double FITTS_A = 100.0; // ms
+	private static final double FITTS_B = 150.0; // ms per bit
+	private static final double SD_FACTOR = 4.133; // We = 4.133 x SDx
+
+	private static final long MS = 1000000L; // ns per ms
+
+	private Random r;
+	private long period; // time between pointer samples (ns)
+	private double noise; // SD of the noise added to the pointer samples (pixels)
+	private double errorRate;
+	private int panelWidth;
+	private int panelHeight;
+
+	private long t; // simulated time (ns)
+	private double px; // pointer position
+	private double py;
+	private long events;
+
+	FittsTaskTwoSimulator(long seed, int pollRate, double noiseArg, double errorRateArg)
+	{
+		r = new Random(seed);
+		period = 1000000000L / pollRate;
+		noise = noiseArg;
+		errorRate = errorRateArg;
+		panelWidth = 1600;
+		panelHeight = 1000;
+		t = 0;
+		events = 0;
+	}
+
+	/**
+	 * Set the size of the (simulated) task panel. The targets are centred in the panel.
+	 */
+	public void setPanelSize(int width, int height)
+	{
+		panelWidth = width;
+		panelHeight = height;
+	}
+
+	/**
+	 * Run one block of the task, i.e., do trials until the engine reports the block is finished.
+	 */
+	public void runBlock(FittsTaskTwoEngine engine) throws IOException
+	{
+		engine.setSize(panelWidth, panelHeight);
+		engine.start();
+		px = panelWidth / 2.0;
+		py = panelHeight / 2.0;
+		while (!engine.isFinished())
+			doTrial(engine);
+	}
+
+	// move to the active target and select it (the first selection in a sequence is always a hit)
+	private void doTrial(FittsTaskTwoEngine engine) throws IOException
+	{
+		FittsTaskTwoLayout layout = engine.getLayout();
+		int target = engine.getActiveTarget();
+		double w = layout.getWidth();
+		double radius = w / 2.0;
+		double xTarget = layout.getX(target);
+		double yTarget = layout.getY(target);
+
+		// endpoint
+		double xEnd, yEnd;
+		if (engine.getTrial() > 0 && r.nextDouble() < errorRate)
+		{
+			// miss: just outside the hysteresis zone (in a random direction)
+			double angle = 2 * Math.PI * r.nextDouble();
+			double d = Math.max(layout.getHysteresis(), 1.0) * radius + 2.0 + r.nextDouble() * radius;
+			xEnd = xTarget + d * Math.cos(angle);
+			yEnd = yTarget + d * Math.sin(angle);
+		} else
+		{
+			// hit: normally distributed around the target centre, redrawn if outside the target
+			double sd = w / SD_FACTOR;
+			int tries = 0;
+			do
+			{
+				xEnd = xTarget + sd * r.nextGaussian();
+				yEnd = yTarget + sd * r.nextGaussian();
+			} while (!layout.contains(target, Math.round(xEnd), Math.round(yEnd), false) && ++tries < 10);
+			if (tries == 10)
+			{
+				xEnd = xTarget;
+				yEnd = yTarget;
+			}
+		}
+
+		// movement (minimum-jerk trajectory, movement time from Fitts' law)
+		double x0 = px;
+		double y0 = py;
+		double distance = Math.hypot(xEnd - x0, yEnd - y0);
+		long mt = Math.round((FITTS_A + FITTS_B * Math.log(distance / w + 1.0) / Math.log(2.0)) * MS);
+		for (long elapsed = period; elapsed < mt; elapsed += period)
+		{
+			double tau = (double)elapsed / mt;
+			double s = tau * tau * tau * (10.0 - 15.0 * tau + 6.0 * tau * tau);
+			px = x0 + s * (xEnd - x0);
+			py = y0 + s * (yEnd - y0);
+			engine.move(t + elapsed, sample(px), sample(py));
+			++events;
+		}
+		t += mt;
+		px = xEnd;
+		py = yEnd;
+		engine.move(t, (int)Math.round(px), (int)Math.round(py));
+
+		// selection (button held for 80-120 ms, no movement)
+		engine.press(t, (int)Math.round(px), (int)Math.round(py));
+		t += (80 + r.nextInt(41)) * MS;
+		engine.release(t, (int)Math.round(px), (int)Math.round(py));
+		engine.presented(t); // an ideal display (no onset latency)
+		events += 3;
+	}
+
+	// a pointer coordinate, as reported by the device (with noise)
+	private int sample(double p)
+	{
+		return (int)Math.round(p + noise * r.nextGaussian());
+	}
+
+	public long getEvents()
+	{
+		return events;
+	}
+
+	// -----------------------------------------------------------------------------------------
+
+	public static void main(String[] args) throws IOException, InterruptedException
+	{
+		String filename = null;
+		int blocks = 1;
+		int pollRate = 125;
+		double noise = 0.5;
+		double errorRate = 0.04;
+		long seed = 1;
+		String collector = null; // host:port
+
+		try
+		{
+			for (int i = 0; i < args.length; ++i)
+			{
+				if (args[i].equals("-b") && i + 1 < args.length)
+					blocks = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-r") && i + 1 < args.length)
+					pollRate = Integer.parseInt(args[++i]);
+				else if (args[i].equals("-n") && i + 1 < args.length)
+					noise = Double.parseDouble(args[++i]);
+				else if (args[i].equals("-e") && i + 1 < args.length)
+					errorRate = Double.parseDouble(args[++i]);
+				else if (args[i].equals("-s") && i + 1 < args.length)
+					seed = Long.parseLong(args[++i]);
+				else if (args[i].equals("-c") && i + 1 < args.length)
+					collector = args[++i];
+				else if (!args[i].startsWith("-") && filename == null)
+					filename = args[i];
+				else
+					usage();
+			}
+		} catch (NumberFormatException e)
+		{
+			usage();
+		}
+		if (blocks < 1 || pollRate < 1 || noise < 0.0 || errorRate < 0.0 || errorRate >= 1.0)
+			usage();
+
+		FittsTaskTwoConfiguration c = FittsTaskTwo.loadConfigurationData(filename);
+		if (c == null)
+			System.exit(1);
+		FittsTaskTwoClock clock = new FittsTaskTwoClock(c.getHighResolutionClock());
+
+		FittsTaskTwoSimulator sim = new FittsTaskTwoSimulator(seed, pollRate, noise, errorRate);
+		sim.setPanelSize(getPanelSize(c), getPanelSize(c));
+
+		FittsTaskTwoCountingSink sd1 = new FittsTaskTwoCountingSink();
+		FittsTaskTwoCountingSink sd2 = new FittsTaskTwoCountingSink();
+		FittsTaskTwoCountingSink sd3 = new FittsTaskTwoCountingSink();
+
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		long gcCount0 = getGcCount();
+		long gcTime0 = getGcTime();
+		long allocated0 = getAllocatedBytes(threads);
+		long start = System.nanoTime();
+
+		long sequences = 0;
+		long trials = 0;
+		long traceBytes = 0;
+		long traceSamples = 0;
+		for (int i = 0; i < blocks; ++i)
+		{
+			FittsTaskTwoEngine engine = new FittsTaskTwoEngine(c, clock);
+			engine.addListener(new FittsTaskTwoRecorder(c, sd1, sd2, sd3));
+			FittsTaskTwoNetworkSink sink = null;
+			if (collector != null)
+			{
+				FittsTaskTwoPublisher events = new FittsTaskTwoPublisher(null);
+				sink = new FittsTaskTwoNetworkSink(collector, FittsTaskTwoNetworkSink.getStationName("sim" + seed, c), c);
+				events.subscribeResults(sink);
+				engine.addListener(events);
+			}
+			sim.runBlock(engine);
+			if (sink != null)
+				sink.awaitClosed(); // the block's data are sent
+			FittsTaskTwoBlock b = engine.getBlock();
+			for (int j = 0; j < b.getSequences(); ++j)
+				trials += (long)b.getSequence(j).getTrials() * (b.getSequence(j).getSequenceRepeatCount() + 1);
+			sequences += b.getSequences();
+			traceBytes += b.getTraceBytes();
+			traceSamples += b.getTraceSamples();
+		}
+
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		long allocated = getAllocatedBytes(threads) - allocated0;
+
+		System.out.println("blocks=" + blocks + " sequences=" + sequences + " trials=" + trials + " events="
+				+ sim.getEvents());
+		System.out.printf("elapsed=%.3f s, %.0f trials/s, %.0f events/s\n", elapsed, trials / elapsed,
+				sim.getEvents() / elapsed);
+		if (allocated0 >= 0)
+			System.out.printf("allocated=%d bytes (%.0f bytes/trial, driver thread)\n", allocated,
+					(double)allocated / trials);
+		System.out.printf("traces=%.0f bytes/block (%.1f bytes/sample, kept for the block)\n",
+				(double)traceBytes / blocks, (double)traceBytes / Math.max(traceSamples, 1));
+		System.out.println("gc=" + (getGcCount() - gcCount0) + " collections, " + (getGcTime() - gcTime0) + " ms");
+		System.out.println("sd1=" + sd1.getCharacters() + " chars, sd2=" + sd2.getCharacters() + " chars, sd3="
+				+ sd3.getCharacters() + " chars");
+	}
+
+	// a (square) panel size large enough for the largest amplitude and width in the configuration
+	static int getPanelSize(FittsTaskTwoConfiguration c)
+	{
+		int size = 0;
+		for (int i = 0; i < c.getA().length; ++i)
+			for (int j = 0; j < c.getW().length; ++j)
+				size = Math.max(size, c.getA()[i] + c.getW()[j] + 20);
+		return size;
+	}
+
+	// bytes allocated by the current thread (-1 if the JVM does not support this)
+	private static long getAllocatedBytes(ThreadMXBean threads)
+	{
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		com.sun.management.ThreadMXBean t = (com.sun.management.ThreadMXBean)threads;
+		if (!t.isThreadAllocatedMemorySupported() || !t.isThreadAllocatedMemoryEnabled())
+			return -1;
+		return t.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+
+	private static long getGcCount()
+	{
+		long n = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			n += Math.max(gc.getCollectionCount(), 0);
+		return n;
+	}
+
+	private static long getGcTime()
+	{
+		long ms = 0;
+		for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans())
+			ms += Math.max(gc.getCollectionTime(), 0);
+		return ms;
+	}
+
+	private static void usage()
+	{
+		System.out.println("Usage: java FittsTaskTwoSimulator [file] [-b blocks] [-r rate] [-n noise] [-e errorRate] [-s seed]");
+		System.out.println("                                  [-c collector]");
+		System.out.println();
+		System.out.println("   where file = configuration file (default is 'FittsTaskTwo.cfg')");
+		System.out.println("         -b = number of blocks (default 1)");
+		System.out.println("         -r = device poll rate (Hz, default 125)");
+		System.out.println("         -n = SD of the noise added to the pointer samples (pixels, default 0.5)");
+		System.out.println("         -e = probability of a miss (default 0.04)");
+		System.out.println("         -s = seed for the random number generator (default 1)");
+		System.out.println("         -c = stream the results to a FittsTaskTwoCollector at host:port");
+		System.exit(0);
+	}
+}
@@ -0,0 +1,201 @@
+import java.util.Arrays;
+
+// -------------------
+// F I T T S T R A C E
+// -------------------
+
+/*
+ * Capture buffer for the trace samples (t, x, y) of the current trial. The samples are held in parallel primitive
+ * arrays, so adding a sample never allocates an object. The buffer is reused from one trial to the next (clear) and
+ * doubles in size if a trial has more samples than the current capacity (e.g., a slow trial with a 1000 Hz mouse).
+ * Since the buffer never shrinks, it stops growing after the first few long trials and the capture path is then
+ * allocation-free. The high-water mark is the largest number of samples held for any trial.
+ *
+ * The intervals between the samples are audited as the samples are added (so a steady sample rate can be checked
+ * without another pass over the trace): the mean, SD (Welford's method), and maximum interval, and the number of gaps
+ * (intervals longer than the gap threshold, e.g., dropped samples or a stalled event queue).
+ *
+ * Optionally, the pointer moves are decimated as they are added (addMove): a move is dropped if it is less than
+ * minDistance pixels from the last sample kept and less than minInterval ns after it (e.g., the pointer at rest on the
+ * target while the button is pressed). The samples added with add (the first sample of a trial, and the button press
+ * and release) are always kept. The audit is of all the samples (getRaw), kept or not.
+ */
+class FittsTaskTwoTrace
+{
+	private static final int INITIAL_CAPACITY = 1000;
+
+	private long[] t; // timestamps
+	private int[] x;
+	private int[] y;
+	private int n; // number of samples in the buffer
+	private int highWaterMark;
+	private long gapThreshold; // ns (intervals longer than this are gaps)
+	private double intervalMean; // ns
+	private double intervalM2; // sum of squared differences from the mean (ns^2)
+	private long intervalMax; // ns
+	private int gaps;
+	private int raw; // samples added (kept or not)
+	private long firstT; // time of the first sample added
+	private long lastT; // time of the last sample added
+	private int minDistance; // pixels (0 = keep every move)
+	private long minInterval; // ns
+
+	FittsTaskTwoTrace()
+	{
+		this(INITIAL_CAPACITY);
+	}
+
+	FittsTaskTwoTrace(int capacityArg)
+	{
+		int capacity = capacityArg > 0 ? capacityArg : INITIAL_CAPACITY;
+		t = new long[capacity];
+		x = new int[capacity];
+		y = new int[capacity];
+		n = 0;
+		highWaterMark = 0;
+		gapThreshold = Long.MAX_VALUE;
+		clear();
+	}
+
+	public void add(long tArg, int xArg, int yArg)
+	{
+		audit(tArg);
+		if (n == t.length)
+			grow();
+		t[n] = tArg;
+		x[n] = xArg;
+		y[n] = yArg;
+		++n;
+		if (n > highWaterMark)
+			highWaterMark = n;
+	}
+
+	// a pointer move: kept, unless it is too close (in space and time) to the last sample kept
+	public void addMove(long tArg, int xArg, int yArg)
+	{
+		if (n > 0 && tArg - t[n - 1] < minInterval)
+		{
+			int dx = xArg - x[n - 1];
+			int dy = yArg - y[n - 1];
+			if (dx * dx + dy * dy < minDistance * minDistance)
+			{
+				audit(tArg);
+				return;
+			}
+		}
+		add(tArg, xArg, yArg);
+	}
+
+	// update the interval stats for a sample
+	private void audit(long tArg)
+	{
+		if (raw > 0)
+		{
+			long d = tArg - lastT; // interval raw (of raw)
+			double delta = d - intervalMean;
+			intervalMean += delta / raw;
+			intervalM2 += delta * (d - intervalMean);
+			if (d > intervalMax)
+				intervalMax = d;
+			if (d > gapThreshold)
+				++gaps;
+		} else
+			firstT = tArg;
+		lastT = tArg;
+		++raw;
+	}
+
+	public void clear()
+	{
+		n = 0;
+		raw = 0;
+		intervalMean = 0.0;
+		intervalM2 = 0.0;
+		intervalMax = 0;
+		gaps = 0;
+	}
+
+	// intervals longer than this (ns) are counted as gaps
+	public void setGapThreshold(long ns)
+	{
+		gapThreshold = ns;
+	}
+
+	// drop the moves closer than this to the last sample kept (0 = keep every move)
+	public void setDecimation(int pixels, long ns)
+	{
+		minDistance = pixels;
+		minInterval = ns;
+	}
+
+	public int size()
+	{
+		return n;
+	}
+
+	public long getT(int i)
+	{
+		return t[i];
+	}
+
+	public int getX(int i)
+	{
+		return x[i];
+	}
+
+	public int getY(int i)
+	{
+		return y[i];
+	}
+
+	public int getCapacity()
+	{
+		return t.length;
+	}
+
+	public int getHighWaterMark()
+	{
+		return highWaterMark;
+	}
+
+	// samples added since clear (kept or not)
+	public int getRaw()
+	{
+		return raw;
+	}
+
+	// effective sample rate (Hz): the samples after the first, over the time from the first to the last
+	public double getRate()
+	{
+		return raw > 1 && lastT > firstT ? (raw - 1) / ((lastT - firstT) / 1e9) : Double.NaN;
+	}
+
+	public double getIntervalMean() // ns
+	{
+		return raw > 1 ? intervalMean : Double.NaN;
+	}
+
+	public double getIntervalSD() // ns
+	{
+		return raw > 2 ? Math.sqrt(intervalM2 / (raw - 2)) : Double.NaN;
+	}
+
+	public long getIntervalMax() // ns
+	{
+		return intervalMax;
+	}
+
+	public int getGaps()
+	{
+		return gaps;
+	}
+
+	// double the capacity (the existing samples are kept)
+	private void grow()
+	{
+		int capacity = t.length * 2;
+		t = Arrays.copyOf(t, capacity);
+		x = Arrays.copyOf(x, capacity);
+		y = Arrays.copyOf(y, capacity);
+	}
+}
@@ -0,0 +1,133 @@
+// ---------------------------------
+// F I T T S T R A C E R E C O R D
+// ---------------------------------
+
+/*
+ * An immutable snapshot of the trace samples for one trial, along with the trial conditions that appear in the lead-in
+ * of the sd3 lines. A snapshot is taken when the trial ends, so the capture buffer can be reused for the next trial
+ * while the snapshot is formatted and written by another thread.
+ *
+ * The records for every trial in the block are kept (in the FittsTaskTwoTrial instances), so the samples are stored
+ * compactly: for each sample, the differences from the previous sample in t, x, and y, as zigzag varints (7 bits per
+ * byte, with the sign in the low bit). A sample at 1000 Hz takes about 5 bytes, instead of 16 as a long and two ints.
+ * The samples are read back with decode, into a FittsTaskTwoTrace (which the reader reuses).
+ */
+class FittsTaskTwoTraceRecord
+{
+	// approximate heap size of a record, not counting the samples (object and array headers, fields)
+	private static final int OVERHEAD = 96;
+
+	final int sequence;
+	final int trial;
+	final long amplitude;
+	final long width;
+	final long xFrom;
+	final long yFrom;
+	final long xTo;
+	final long yTo;
+	final FittsTaskTwoClock clock; // the time base of the samples
+	private final int n; // number of samples
+	private final byte[] data; // the samples, delta encoded
+
+	FittsTaskTwoTraceRecord(int sequenceArg, int trialArg, FittsTaskTwoTrial ftt, FittsTaskTwoTrace trace,
+			FittsTaskTwoClock clockArg)
+	{
+		clock = clockArg;
+		sequence = sequenceArg;
+		trial = trialArg;
+		amplitude = Math.round(ftt.amplitude);
+		width = Math.round(ftt.width);
+		xFrom = Math.round(ftt.xFrom);
+		yFrom = Math.round(ftt.yFrom);
+		xTo = Math.round(ftt.xTo);
+		yTo = Math.round(ftt.yTo);
+
+		// two passes: the size of the encoded samples, then the samples
+		n = trace.size();
+		int length = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			length += varintSize(zigzag(trace.getT(i) - (i > 0 ? trace.getT(i - 1) : 0)));
+			length += varintSize(zigzag(trace.getX(i) - (i > 0 ? trace.getX(i - 1) : 0)));
+			length += varintSize(zigzag(trace.getY(i) - (i > 0 ? trace.getY(i - 1) : 0)));
+		}
+		data = new byte[length];
+		int p = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			p = putVarint(data, p, zigzag(trace.getT(i) - (i > 0 ? trace.getT(i - 1) : 0)));
+			p = putVarint(data, p, zigzag(trace.getX(i) - (i > 0 ? trace.getX(i - 1) : 0)));
+			p = putVarint(data, p, zigzag(trace.getY(i) - (i > 0 ? trace.getY(i - 1) : 0)));
+		}
+	}
+
+	public int size()
+	{
+		return n;
+	}
+
+	/**
+	 * Put the samples in the given trace (which is cleared first).
+	 */
+	public void decode(FittsTaskTwoTrace trace)
+	{
+		trace.clear();
+		long[] sample = new long[3]; // t, x, y
+		int p = 0;
+		for (int i = 0; i < n; ++i)
+		{
+			for (int k = 0; k < 3; ++k)
+			{
+				// a varint: 7 bits per byte, low bits first, the high bit set on all but the last byte
+				long v = 0;
+				int shift = 0;
+				byte b;
+				do
+				{
+					b = data[p++];
+					v |= (long)(b & 0x7f) << shift;
+					shift += 7;
+				} while (b < 0);
+				sample[k] += unzigzag(v);
+			}
+			trace.add(sample[0], (int)sample[1], (int)sample[2]);
+		}
+	}
+
+	// approximate heap size of the record (bytes)
+	public long getBytes()
+	{
+		return OVERHEAD + data.length;
+	}
+
+	// small magnitudes (positive or negative) become small unsigned values: 0, -1, 1, -2, 2, ... -> 0, 1, 2, 3, 4, ...
+	private static long zigzag(long v)
+	{
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static long unzigzag(long v)
+	{
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+	private static int varintSize(long v)
+	{
+		int size = 1;
+		while ((v >>>= 7) != 0)
+			++size;
+		return size;
+	}
+
+	// put v in b at position p, returning the position after it
+	private static int putVarint(byte[] b, int p, long v)
+	{
+		while ((v & ~0x7fL) != 0)
+		{
+			b[p++] = (byte)((v & 0x7f) | 0x80);
+			v >>>= 7;
+		}
+		b[p++] = (byte)v;
+		return p;
+	}
+}
@@ -0,0 +1,159 @@
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+
+// ---------------------------------
+// F I T T S T R A C E W R I T E R
+// ---------------------------------
+
+/*
+ * Formats and writes the sd3 trace data on a dedicated thread. The Event Dispatch Thread only hands over an immutable
+ * FittsTaskTwoTraceRecord at the end of each trial (through a bounded queue with one producer and one consumer), so
+ * the work done on the EDT per click does not depend on the length of the trace.
+ *
+ * Trace data are only written if the sequence is kept. The formatted lines are held until commit() (end of sequence)
+ * or dropped by discard() (sequence repeated), so the sd3 sink gets the trace data for a sequence in one write.
+ * close() writes anything pending, closes the sink, and waits for the writer thread to finish.
+ */
+class FittsTaskTwoTraceWriter implements Runnable
+{
+	private static final int QUEUE_CAPACITY = 1024;
+
+	// control messages (passed through the queue, so they are ordered with the trace records)
+	private static final Object COMMIT = new Object();
+	private static final Object DISCARD = new Object();
+	private static final Object CLOSE = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private final Thread thread;
+	private final FittsTaskTwoDataSink sink;
+	private final String app;
+	private final StringBuilder pending; // formatted, but uncommitted, trace data
+	private final FittsTaskTwoTrace samples; // the samples of the record being formatted (reused)
+
+	FittsTaskTwoTraceWriter(FittsTaskTwoDataSink sinkArg, String participantCode, String conditionCode,
+			String blockCode)
+	{
+		sink = sinkArg;
+		app = "FittsTaskTwo" + "," + participantCode + "," + conditionCode + "," + blockCode + ",";
+		queue = new ArrayBlockingQueue<Object>(QUEUE_CAPACITY);
+		pending = new StringBuilder(64 * 1024);
+		samples = new FittsTaskTwoTrace();
+		thread = new Thread(this, "FittsTaskTwo sd3 writer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public void write(FittsTaskTwoTraceRecord r)
+	{
+		put(r);
+	}
+
+	public void commit()
+	{
+		put(COMMIT);
+	}
+
+	public void discard()
+	{
+		put(DISCARD);
+	}
+
+	public void close()
+	{
+		put(CLOSE);
+		try
+		{
+			thread.join();
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void put(Object o)
+	{
+		try
+		{
+			queue.put(o);
+		} catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public void run()
+	{
+		try
+		{
+			while (true)
+			{
+				Object o = queue.take();
+				if (o == COMMIT)
+				{
+					sink.write(pending);
+					sink.commit();
+					pending.setLength(0);
+				} else if (o == DISCARD)
+					pending.setLength(0);
+				else if (o == CLOSE)
+				{
+					sink.write(pending);
+					sink.close();
+					return;
+				} else
+					format((FittsTaskTwoTraceRecord)o);
+			}
+		} catch (IOException e)
+		{
+			SwingUtilities.invokeLater(new Runnable()
+			{
+				public void run()
+				{
+					JOptionPane.showMessageDialog(null, "I/O error writing to sd3 file", "I/O Error",
+							JOptionPane.ERROR_MESSAGE);
+					System.exit(1);
+				}
+			});
+		} catch (InterruptedException e)
+		{
+		}
+	}
+
+	private void format(FittsTaskTwoTraceRecord r)
+	{
+		format(pending, app, r, samples);
+	}
+
+	/**
+	 * Append the three trace lines (t=, x=, y=) for a trial to the given builder. app is the lead-in for the lines
+	 * (App,Participant,Condition,Block,), and samples is a trace to decode the samples into (reused).
+	 */
+	static void format(StringBuilder pending, String app, FittsTaskTwoTraceRecord r, FittsTaskTwoTrace samples)
+	{
+		int leadinStart = pending.length();
+		pending.append(app).append(r.sequence).append(',').append(r.amplitude).append(',').append(r.width)
+				.append(',').append(r.trial).append(',').append(r.xFrom).append(',').append(r.yFrom).append(',')
+				.append(r.xTo).append(',').append(r.yTo).append(',');
+		String leadin = pending.substring(leadinStart);
+		r.decode(samples);
+
+		pending.append("t=,");
+		for (int i = 0; i < samples.size(); ++i)
+			r.clock.appendMillis(pending, samples.getT(i)).append(',');
+		pending.append('\n');
+		pending.append(leadin);
+		pending.append("x=,");
+		for (int i = 0; i < samples.size(); ++i)
+			pending.append(samples.getX(i)).append(',');
+		pending.append('\n');
+		pending.append(leadin);
+		pending.append("y=,");
+		for (int i = 0; i < samples.size(); ++i)
+			pending.append(samples.getY(i)).append(',');
+		pending.append('\n');
+	}
+}
@@ -1,4 +1,5 @@
 import java.awt.geom.Point2D;
+import java.util.Locale;
 
 // ---------------------
 // F I T T S T R I A L
@@ -19,18 +20,37 @@ class FittsTaskTwoTrial
 	// observations
 	private double ae; // effective ('actual') amplitude
 	private double dx; // delta x
-	private long pt; // positioning time
-	private long st; // selection time
-	public long mt; // movement time (Note: mt = pt + st)
+	private double pt; // positioning time (ms) (-1 = unknown)
+	private double st; // selection time (ms) (-1 = unknown)
+	public double mt; // movement time (ms) (Note: mt = pt + st)
 	private int err; // error
-	private long[] t; // timestamps
-	
-	AccuracyMeasures am;
+	private double onset; // target onset latency (ms), from the start of the trial until the target was shown (-1 = unknown)
+	private int coalesced; // motion events merged by the event queue during the trial
+	private int gcPauses; // garbage collection pauses during the trial
+	private double gcPause; // total time of the pauses (ms)
+	private double rate; // effective sample rate of the trace (Hz)
+	private double interval; // mean interval between the trace samples (ms)
+	private double intervalSD; // SD of the intervals (ms)
+	private double intervalMax; // longest interval (ms)
+	private int gaps; // intervals longer than the gap threshold
+	private int raw; // samples captured (the trace has the samples kept, see FittsTaskTwoTrace.addMove)
+	private int dropped; // samples lost because the sample ring was full (see FittsTaskTwoSampleRing)
+	private FittsTaskTwoTraceRecord trace; // timestamps and x,y sample points (compact, see FittsTaskTwoTraceRecord)
+
+	// accuracy measures (computed from the trace by an AccuracyMeasures object, which is not kept; 0 until computed)
+	private int tre; // target re-entries
+	private int tac; // task-axis crossings
+	private int mdc; // movement direction changes
+	private int odc; // orthogonal direction changes
+	private double mv; // movement variability
+	private double me; // movement error
+	private double mo; // movement offset
 
 	FittsTaskTwoTrial(int aArg, int wArg)
 	{
 		amplitude = aArg;
 		width = wArg;
+		onset = -1;
 	}
 
 	public void setAe(double aeArg)
@@ -43,17 +63,17 @@ class FittsTaskTwoTrial
 		dx = dxArg;
 	}
 
-	public void setPt(long ptArg)
+	public void setPt(double ptArg)
 	{
 		pt = ptArg;
 	}
 
-	public void setSt(long stArg)
+	public void setSt(double stArg)
 	{
 		st = stArg;
 	}
 
-	public void setMt(long mtArg)
+	public void setMt(double mtArg)
 	{
 		mt = mtArg;
 	}
@@ -63,6 +83,50 @@ class FittsTaskTwoTrial
 		err = errArg;
 	}
 
+	public void setOnset(double onsetArg)
+	{
+		onset = onsetArg;
+	}
+
+	public void setCoalesced(int n)
+	{
+		coalesced = n;
+	}
+
+	public void setDropped(int n)
+	{
+		dropped = n;
+	}
+
+	public void setGcPauses(int n)
+	{
+		gcPauses = n;
+	}
+
+	public void setGcPause(double ms)
+	{
+		gcPause = ms;
+	}
+
+	// the sampling audit for the trace, as captured (see FittsTaskTwoTrace)
+	public void setSampling(FittsTaskTwoTrace trace)
+	{
+		setSampling(trace.getRate(), trace.getIntervalMean() / 1e6, trace.getIntervalSD() / 1e6,
+				trace.getIntervalMax() / 1e6, trace.getGaps(), trace.getRaw());
+	}
+
+	// as above, from the values (e.g., read from the journal)
+	public void setSampling(double rateArg, double intervalArg, double intervalSDArg, double intervalMaxArg,
+			int gapsArg, int rawArg)
+	{
+		rate = rateArg;
+		interval = intervalArg;
+		intervalSD = intervalSDArg;
+		intervalMax = intervalMaxArg;
+		gaps = gapsArg;
+		raw = rawArg;
+	}
+
 	public void setXFrom(double x)
 	{
 		xFrom = x;
@@ -93,68 +157,164 @@ class FittsTaskTwoTrial
 		ySelect = y;
 	}
 
-	public void setTraceTimestamps(long[] tArg, int n) // timestamps for sample points
+	public void setTrace(FittsTaskTwoTraceRecord traceArg) // timestamps and x,y sample points
 	{
-		t = new long[n];
-		for (int i = 0; i < t.length; ++i)
-			t[i] = tArg[i];
+		trace = traceArg;
 	}
 
-	public void setTracePoints(Point2D.Double[] pArg, int n) // x,y sample points
+	/**
+	 * Compute the accuracy measures from the trace. This is O(n) in the samples, so it is done with the sequence
+	 * summary stats (see FittsTaskTwoSequence.computeSequenceSummaryStats), on the worker if there is one, not when the
+	 * trial is complete. Until then, the measures are 0.
+	 */
+	public void computeAccuracyMeasures()
 	{
 		// create an array of just the right size to pass to the AccuracyMeasures constructor
-		Point2D.Double[] p = new Point2D.Double[n];
+		FittsTaskTwoTrace samples = new FittsTaskTwoTrace(trace.size());
+		trace.decode(samples);
+		Point2D.Double[] p = new Point2D.Double[samples.size()];
 		for (int i = 0; i < p.length; ++i)
-			p[i] = pArg[i];
-		
-		am = new AccuracyMeasures(new Point2D.Double(xFrom, yFrom), new Point2D.Double(xTo, yTo), width, p);
+			p[i] = new Point2D.Double(samples.getX(i), samples.getY(i));
+
+		// keep the measures, but not the path (the AccuracyMeasures object holds two copies of it)
+		AccuracyMeasures am = new AccuracyMeasures(new Point2D.Double(xFrom, yFrom), new Point2D.Double(xTo, yTo),
+				width, p);
+		tre = am.getTRE();
+		tac = am.getTAC();
+		mdc = am.getMDC();
+		odc = am.getODC();
+		mv = am.getMV();
+		me = am.getME();
+		mo = am.getMO();
+	}
+
+	public FittsTaskTwoTraceRecord getTrace()
+	{
+		return trace;
+	}
+
+
+	public double getAe()
+	{
+		return ae;
+	}
+
+	public double getDx()
+	{
+		return dx;
 	}
-	
+
 	// get methods for positioning time and selection time (NOTE: MT = PT + ST)
-	public long getPT()
+	public double getPT()
 	{
 		return pt;
 	}
 
-	public long getST()
+	public double getST()
 	{
 		return st;
 	}
 
+	public int getErr()
+	{
+		return err;
+	}
+
+	public double getOnset()
+	{
+		return onset;
+	}
+
+	public int getCoalesced()
+	{
+		return coalesced;
+	}
+
+	public int getDropped()
+	{
+		return dropped;
+	}
+
+	public int getGcPauses()
+	{
+		return gcPauses;
+	}
+
+	public double getGcPause()
+	{
+		return gcPause;
+	}
+
+	public double getRate()
+	{
+		return rate;
+	}
+
+	public double getInterval()
+	{
+		return interval;
+	}
+
+	public double getIntervalSD()
+	{
+		return intervalSD;
+	}
+
+	public double getIntervalMax()
+	{
+		return intervalMax;
+	}
+
+	public int getGaps()
+	{
+		return gaps;
+	}
+
+	public int getRaw()
+	{
+		return raw;
+	}
+
+	// samples kept in the trace
+	public int getKept()
+	{
+		return trace != null ? trace.size() : 0;
+	}
+
 	// get methods for accuracy measures
 	public int getTRE()
 	{
-		return am.getTRE();
+		return tre;
 	}
 
 	public int getTAC()
 	{
-		return am.getTAC();
+		return tac;
 	}
 
 	public int getMDC()
 	{
-		return am.getMDC();
+		return mdc;
 	}
 
 	public int getODC()
 	{
-		return am.getODC();
+		return odc;
 	}
 
 	public double getMV()
 	{
-		return am.getMV();
+		return mv;
 	}
 
 	public double getME()
 	{
-		return am.getME();
+		return me;
 	}
 
 	public double getMO()
 	{
-		return am.getMO();
+		return mo;
 	}
 
 	public String toString()
@@ -166,13 +326,21 @@ class FittsTaskTwoTrial
 
 	public String getTrialData()
 	{
-		return amplitude + "," + width + "," + ae + "," + dx + "," + pt + "," + st + "," + mt + "," + err + "," + getTRE() + "," + getTAC()
-				+ "," + getMDC() + "," + getODC() + "," + getMV() + "," + getME() + "," + getMO();
+		FittsTaskTwoClock clock = trace.clock; // the times are written in the time base they were taken in
+		return amplitude + "," + width + "," + ae + "," + dx + "," + clock.formatMillis(pt) + ","
+				+ clock.formatMillis(st) + "," + clock.formatMillis(mt) + "," + err + ","
+				+ getTRE() + "," + getTAC()
+				+ "," + getMDC() + "," + getODC() + "," + getMV() + "," + getME() + "," + getMO() + ","
+				+ clock.formatMillis(onset) + "," + coalesced + "," + gcPauses + ","
+				+ String.format(Locale.ROOT, "%.3f", gcPause) + ","
+				+ String.format(Locale.ROOT, "%.1f,%.3f,%.3f,%.3f", rate, interval, intervalSD, intervalMax) + ","
+				+ gaps + "," + raw + "," + getKept() + "," + dropped;
 	}
 
 	public static String getTrialHeader()
 	{
-		return "A,W,Ae,dx,PT(ms),ST(ms),MT(ms),Errors,TRE,TAC,MDC,ODC,MV,ME,MO";
+		return "A,W,Ae,dx,PT(ms),ST(ms),MT(ms),Errors,TRE,TAC,MDC,ODC,MV,ME,MO,Onset(ms),Coalesced,GcPauses,GcPause(ms),Rate(Hz),Interval(ms),IntervalSD(ms),"
+				+ "IntervalMax(ms),Gaps,Raw,Kept,Dropped";
 	}
 }
 
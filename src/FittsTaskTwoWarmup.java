@@ -0,0 +1,90 @@
+import java.io.IOException;
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+
+// ---------------------
+// F I T T S W A R M U P
+// ---------------------
+
+/*
+ * Warm-up for the JIT compiler, before the first sequence. A simulated participant (FittsTaskTwoSimulator) does
+ * blocks of the task, through the trial engine, AccuracyMeasures, Throughput, and the output formatting (to counting
+ * sinks), until the hot methods are compiled. Without this, the first sequence runs (partly) in the interpreter and
+ * its timing differs from the sequences that follow.
+ *
+ * The warm-up is "stable" when two blocks in a row add no more than 2 ms to the JIT compiler's total compilation time
+ * (CompilationMXBean). If the JVM does not report the compilation time, a fixed number of blocks is done. Either way,
+ * the warm-up stops after 10 s. The garbage left by the warm-up is collected at the end, so it does not cause a pause
+ * during the first sequence.
+ */
+class FittsTaskTwoWarmup
+{
+	private static final int MIN_BLOCKS = 3;
+	private static final int FIXED_BLOCKS = 10; // if the compilation time is not available
+	private static final int STABLE_BLOCKS = 2;
+	private static final long STABLE_TIME = 2; // ms of compilation per block
+	private static final long MAX_TIME = 10000; // ms
+
+	private FittsTaskTwoConfiguration c;
+	private int blocks;
+	private long time;
+	private boolean stable;
+
+	FittsTaskTwoWarmup(FittsTaskTwoConfiguration cArg)
+	{
+		c = cArg;
+	}
+
+	public void run() throws IOException
+	{
+		CompilationMXBean jit = ManagementFactory.getCompilationMXBean();
+		boolean monitor = jit != null && jit.isCompilationTimeMonitoringSupported();
+
+		FittsTaskTwoSimulator sim = new FittsTaskTwoSimulator(1, 125, 0.5, 0.04);
+		sim.setPanelSize(FittsTaskTwoSimulator.getPanelSize(c), FittsTaskTwoSimulator.getPanelSize(c));
+		FittsTaskTwoCountingSink sink = new FittsTaskTwoCountingSink();
+		FittsTaskTwoClock clock = new FittsTaskTwoClock(c.getHighResolutionClock());
+
+		long start = System.currentTimeMillis();
+		long compilationTime = monitor ? jit.getTotalCompilationTime() : 0;
+		int stableBlocks = 0;
+		blocks = 0;
+		stable = false;
+		while (!stable && System.currentTimeMillis() - start < MAX_TIME)
+		{
+			FittsTaskTwoEngine engine = new FittsTaskTwoEngine(c, clock);
+			engine.addListener(new FittsTaskTwoRecorder(c, sink, sink, sink));
+			sim.runBlock(engine);
+			++blocks;
+
+			if (monitor)
+			{
+				long t = jit.getTotalCompilationTime();
+				stableBlocks = t - compilationTime <= STABLE_TIME ? stableBlocks + 1 : 0;
+				compilationTime = t;
+				stable = blocks >= MIN_BLOCKS && stableBlocks >= STABLE_BLOCKS;
+			} else
+				stable = blocks >= FIXED_BLOCKS;
+		}
+		System.gc();
+		time = System.currentTimeMillis() - start;
+	}
+
+	// number of blocks done
+	public int getBlocks()
+	{
+		return blocks;
+	}
+
+	// duration of the warm-up (ms)
+	public long getTime()
+	{
+		return time;
+	}
+
+	// false if the warm-up stopped at the time limit
+	public boolean isStable()
+	{
+		return stable;
+	}
+}
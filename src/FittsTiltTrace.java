@@ -71,6 +71,7 @@ public class FittsTiltTrace
 {
 	public static void main(String[] args)
 	{
+		FittsTaskTwoLog.installCrashHandler("FittsTiltTrace");
 		if (args.length > 0)
 		{
 			System.out.println("Usage: FittsTiltTrace (see API for details)");
@@ -531,7 +532,8 @@ class FittsTiltTraceFrame extends JFrame implements ActionListener, ItemListener
 		final double BOTTOM_MARGIN = 50.0;
 
 		public void drawTargets(Graphics g)
-		{       System.out.println("drawTargets()");
+		{
+			FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.DRAW_TARGETS, sequenceIdx + 1);
 			if (ts == null || ts.length == 0)
 				return;
 
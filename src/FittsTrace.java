@@ -177,6 +177,7 @@ public class FittsTrace
 {
 	public static void main(String[] args)
 	{
+		FittsTaskTwoLog.installCrashHandler("FittsTrace");
 		if (args.length > 0)
 		{
 			System.out.println("Usage: FittsTrace (see API for details)");
@@ -421,7 +422,7 @@ class FittsTraceFrame extends JFrame implements ActionListener, KeyListener, Ite
 
 	public void keyTyped(KeyEvent ke)
 	{
-		System.out.println(ke.getKeyChar());
+		FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.KEY, ke.getKeyChar());
 	}
 
 	// -----------------------------------------
@@ -463,7 +464,8 @@ class FittsTraceFrame extends JFrame implements ActionListener, KeyListener, Ite
 		}
 
 		public void drawTargets(Graphics g)
-		{       System.out.println("drawTargets()");
+		{
+			FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.DRAW_TARGETS, sequenceCounter);
 			if (t == null || t.length == 0)
 				return;
 
@@ -546,7 +548,8 @@ class FittsTraceFrame extends JFrame implements ActionListener, KeyListener, Ite
 		}
 
 		public void drawTraces(Graphics g)
-		{       System.out.println("drawTraces()");
+		{
+			FittsTaskTwoLog.log(FittsTaskTwoLog.DEBUG, FittsTaskTwoLog.DRAW_TRACES, sequenceCounter);
 			if (t == null || t.length == 0)
 				return;
 